@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * Dial's bucket queue: a monotone priority queue over int node ids whose keys
+ * are multiples of a fixed quantization step.
+ *
+ * <p>Keys are stored as integer multiples of the step. Dijkstra never offers a
+ * key below the last one polled, nor more than the largest edge weight C above
+ * it, so C + 1 buckets used circularly cover every live key. Each bucket is an
+ * intrusive doubly linked list threaded through per-node arrays, which makes
+ * offer and decrease-key O(1) and poll amortized O(1) plus the empty buckets
+ * skipped. Nothing is allocated after construction.
+ *
+ * <p>Only valid for searches without a heuristic over graphs whose weights fit
+ * the step; see {@link CompiledGraph#quantum()}.
+ */
+final class BucketQueue extends SearchQueue {
+
+    private static final int NONE = -1;
+
+    private final float   step;
+    private final float   inverseStep;
+    private final int[]   head;     // bucket -> first node id, or NONE
+    private final int[]   next;     // node id -> next id in its bucket
+    private final int[]   prev;     // node id -> previous id in its bucket
+    private final int[]   key;      // node id -> key in steps, or NONE if absent
+    private int cursor;             // last key polled; no live key is below it
+    private int size;
+
+    /**
+     * @param capacity  number of node ids
+     * @param step      quantization step of the keys
+     * @param maxWeight largest edge weight, in steps
+     */
+    BucketQueue(int capacity, float step, int maxWeight) {
+        this.step        = step;
+        this.inverseStep = 1f / step;
+        this.head        = new int[maxWeight + 2];   // one spare bucket absorbs key rounding
+        this.next        = new int[capacity];
+        this.prev        = new int[capacity];
+        this.key         = new int[capacity];
+        Arrays.fill(head, NONE);
+        Arrays.fill(key, NONE);
+    }
+
+    /** An empty queue of the same capacity, step and width. */
+    BucketQueue sibling() {
+        return new BucketQueue(next.length, step, head.length - 2);
+    }
+
+    @Override boolean isEmpty()       { return size == 0; }
+    @Override int     size()          { return size; }
+    @Override boolean contains(int v) { return key[v] != NONE; }
+
+    @Override
+    float minKey() {
+        return advance() * step;
+    }
+
+    /** Removes all entries in O(size + buckets) when not already empty. */
+    @Override
+    void clear() {
+        if (size > 0)
+            for (int b = 0; b < head.length; b++) {
+                for (int v = head[b]; v != NONE; v = next[v]) key[v] = NONE;
+                head[b] = NONE;
+            }
+        cursor = 0;
+        size   = 0;
+    }
+
+    @Override
+    void offer(int v, float distance) {
+        int k = Math.round(distance * inverseStep);
+        if (key[v] != NONE) {
+            if (k >= key[v]) return;
+            unlink(v);
+        } else if (size++ == 0 && (k < cursor || k - cursor >= head.length)) {
+            cursor = k;     // first key after clear(), or one the buckets cannot reach
+        }
+
+        int b = k % head.length;
+        key[v]  = k;
+        prev[v] = NONE;
+        next[v] = head[b];
+        if (head[b] != NONE) prev[head[b]] = v;
+        head[b] = v;
+    }
+
+    @Override
+    int poll() {
+        int v = head[advance() % head.length];
+        unlink(v);
+        key[v] = NONE;
+        size--;
+        return v;
+    }
+
+    /** Moves the cursor to the first non-empty bucket and returns its key. */
+    private int advance() {
+        while (head[cursor % head.length] == NONE) cursor++;
+        return cursor;
+    }
+
+    private void unlink(int v) {
+        int b = key[v] % head.length;
+        if (prev[v] != NONE) next[prev[v]] = next[v];
+        else                 head[b]       = next[v];
+        if (next[v] != NONE) prev[next[v]] = prev[v];
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.*;
+
+/**
+ * Parametric synthetic building for benchmarks and stress tests, from a few
+ * hundred nodes to tens of millions of edges.
+ *
+ * <p>Every floor shares one plan: a lattice of horizontal and vertical
+ * corridors, {@code spacing} corridor cells apart, with rooms opening off
+ * either side of the corridor cells between junctions. Stairwells join the
+ * same junction on adjacent floors, exits sit at both ends of every
+ * horizontal corridor on the exit floors, and seeded fire sites heat the
+ * cells around them, making the hottest ones impassable through the normal
+ * thresholds. The same settings and seed always give the same building.
+ *
+ * <pre>
+ *   BuildingGenerator.Building b = new BuildingGenerator()
+ *           .floors(10).corridors(40, 40).hazards(25, 4).seed(7)
+ *           .generate();
+ *   b.compiled.findNearestExit(b.graph.getNode("9-20-20").get());
+ * </pre>
+ *
+ * <p>Edges are collected in flat arrays and compiled with one counting pass
+ * instead of going through {@link Graph#compile()}, which would look every
+ * edge up in a map: that is what lets buildings with millions of edges come
+ * up in seconds. The nodes' adjacency maps are filled as well, so the
+ * Node-level API and the GUI work on the result like on any hand-built graph.
+ *
+ * <p>Node ids are {@code floor-row-col} for corridor cells, the corridor
+ * cell's id plus {@code a} or {@code b} for its rooms, and
+ * {@code floor-row-W} / {@code floor-row-E} for exits. Coordinates are in
+ * canvas units; floors are stacked on the same plan unless
+ * {@link #floorOffset(float, float)} spreads them out for display.
+ */
+public final class BuildingGenerator {
+
+    // Canvas units between corridor cells, and from a corridor cell to its rooms
+    private static final float CELL        = 40f;
+    private static final float ROOM_OFFSET = 16f;
+
+    // Edge weights: corridor steps vary with congestion, the rest are fixed
+    private static final int   MIN_STEP   = 1;
+    private static final int   MAX_STEP   = 3;
+    private static final float DOOR       = 1f;
+    private static final float STAIRS     = 5f;
+
+    // Ambient and peak conditions; a node is impassable once heat exceeds one half
+    private static final float AMBIENT_TEMPERATURE = 20f;
+    private static final float PEAK_TEMPERATURE    = 100f;
+    private static final float AMBIENT_GAS         = 0.01f;
+    private static final float PEAK_GAS            = 0.81f;
+
+    private int    floors         = 4;
+    private int    corridorRows   = 4;
+    private int    corridorCols   = 4;
+    private int    spacing        = 4;
+    private double roomDensity    = 0.5;
+    private int    stairwellEvery = 2;
+    private int[]  exitFloors     = {0};
+    private int    hazardSites    = 0;
+    private int    hazardRadius   = 3;
+    private long   seed           = 42;
+    private float  floorDx, floorDy;
+
+    /**
+     * A generated building: the graph with every node registered, and its
+     * snapshot compiled through the bulk path. Use {@link #compiled} rather
+     * than {@code graph.compile()}, which would compile it all over again.
+     */
+    public static final class Building {
+        public final Graph         graph;
+        public final CompiledGraph compiled;
+
+        Building(Graph graph, CompiledGraph compiled) {
+            this.graph    = graph;
+            this.compiled = compiled;
+        }
+    }
+
+    // -------------------------
+    //  Settings
+    // -------------------------
+
+    /** Number of floors, 0 to {@code count - 1}. Default 4. */
+    public BuildingGenerator floors(int count) {
+        if (count < 1) throw new IllegalArgumentException("floors must be positive");
+        this.floors = count;
+        return this;
+    }
+
+    /** Horizontal and vertical corridors per floor. Default 4 x 4. */
+    public BuildingGenerator corridors(int rows, int cols) {
+        if (rows < 1 || cols < 1) throw new IllegalArgumentException("corridor counts must be positive");
+        this.corridorRows = rows;
+        this.corridorCols = cols;
+        return this;
+    }
+
+    /** Corridor cells from one junction to the next; 1 gives a plain grid without rooms. Default 4. */
+    public BuildingGenerator spacing(int cells) {
+        if (cells < 1) throw new IllegalArgumentException("spacing must be positive");
+        this.spacing = cells;
+        return this;
+    }
+
+    /** Probability of a room on each side of a corridor cell between junctions. Default 0.5. */
+    public BuildingGenerator roomDensity(double density) {
+        if (!(density >= 0 && density <= 1)) throw new IllegalArgumentException("roomDensity must be in [0, 1]");
+        this.roomDensity = density;
+        return this;
+    }
+
+    /** A stairwell at every {@code stride}-th junction in both directions. Default 2. */
+    public BuildingGenerator stairwellEvery(int stride) {
+        if (stride < 1) throw new IllegalArgumentException("stairwell stride must be positive");
+        this.stairwellEvery = stride;
+        return this;
+    }
+
+    /** Floors with exits at both ends of each horizontal corridor. Default the ground floor only. */
+    public BuildingGenerator exitFloors(int... levels) {
+        for (int f : levels)
+            if (f < 0) throw new IllegalArgumentException("Invalid exit floor " + f);
+        this.exitFloors = levels.clone();
+        return this;
+    }
+
+    /**
+     * Fire sites placed at random corridor cells. Heat falls off linearly to
+     * zero {@code radius + 1} cells away, so cells within about half the
+     * radius exceed the default thresholds and become impassable. Default none.
+     */
+    public BuildingGenerator hazards(int sites, int radius) {
+        if (sites < 0 || radius < 0) throw new IllegalArgumentException("hazard sites and radius must be non-negative");
+        this.hazardSites  = sites;
+        this.hazardRadius = radius;
+        return this;
+    }
+
+    /** Seed for corridor weights, rooms and hazards. Default 42. */
+    public BuildingGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Shifts each floor by (dx, dy) from the one below, e.g. to lay floors side by side on a canvas. Default 0. */
+    public BuildingGenerator floorOffset(float dx, float dy) {
+        this.floorDx = dx;
+        this.floorDy = dy;
+        return this;
+    }
+
+    /**
+     * Picks a square corridor lattice so that, with the current floors,
+     * spacing, room density and exits, the building has about {@code nodes} nodes.
+     */
+    public BuildingGenerator size(int nodes) {
+        int n = 1;
+        while (estimatedNodes(n + 1, n + 1) <= nodes) n++;
+        if (n > 1 && nodes - estimatedNodes(n, n) > estimatedNodes(n + 1, n + 1) - nodes) n++;
+        return corridors(n, n);
+    }
+
+    /** Expected node count of the current settings; rooms make it approximate. */
+    public long estimatedNodes() {
+        return estimatedNodes(corridorRows, corridorCols);
+    }
+
+    // -------------------------
+    //  Generation
+    // -------------------------
+
+    /** Builds the building described by the current settings. */
+    public Building generate() {
+        return new Assembly().build();
+    }
+
+    // State of one generate() call: nodes and the flat edge list under construction
+    private final class Assembly {
+        final Random rnd    = new Random(seed);
+        final int    width  = (corridorCols - 1) * spacing + 1;   // cells per corridor row
+        final int    height = (corridorRows - 1) * spacing + 1;
+
+        // Boxed weights shared by all adjacency maps, indexed by the integer weight
+        final Float[] boxed = new Float[(int) Math.max(MAX_STEP, STAIRS) + 1];
+
+        Node[]  nodes;
+        int     nodeCount;
+        int[]   tails, heads;
+        float[] weights;
+        int     edgeCount;
+
+        Building build() {
+            long expected = estimatedNodes();
+            if (expected > Integer.MAX_VALUE / 4) throw new IllegalArgumentException("Building too large: " + expected + " nodes");
+            nodes   = new Node[(int) (expected + expected / 8 + 16)];
+            tails   = new int[2 * nodes.length + 16];
+            heads   = new int[tails.length];
+            weights = new float[tails.length];
+            for (int i = 0; i < boxed.length; i++) boxed[i] = (float) i;
+
+            int[][] sites = placeHazards();
+            float[] heat  = new float[width * height];
+            int[]   below = null;
+            for (int f = 0; f < floors; f++) {
+                heat(heat, sites, f);
+                int[] cells = floor(f, heat);
+                if (below != null) stairs(below, cells);
+                below = cells;
+            }
+
+            Node[] all   = Arrays.copyOf(nodes, nodeCount);
+            Graph  graph = new Graph();
+            for (Node node : all) graph.addNode(node);
+            return new Building(graph, CompiledGraph.ofEdges(all, tails, heads, weights, edgeCount,
+                                                              CompiledGraph.AUTO_QUANTUM));
+        }
+
+        // One floor: corridor cells, their rooms and exits. Returns the node of each cell, -1 off the corridors.
+        int[] floor(int f, float[] heat) {
+            boolean exits = false;
+            for (int level : exitFloors) exits |= level == f;
+
+            int[] cell = new int[width * height];
+            Arrays.fill(cell, -1);
+            for (int r = 0; r < height; r++) {
+                for (int c = 0; c < width; c++) {
+                    boolean across = r % spacing == 0, along = c % spacing == 0;
+                    if (!across && !along) continue;
+
+                    String id = f + "-" + r + "-" + c;
+                    float  h  = heat[r * width + c];
+                    float  x  = c * CELL + f * floorDx, y = r * CELL + f * floorDy;
+                    int    v  = add(new Node(id, f, temperature(h), gas(h)), x, y);
+                    cell[r * width + c] = v;
+                    if (c > 0 && cell[r * width + c - 1] >= 0)   link(v, cell[r * width + c - 1], step());
+                    if (r > 0 && cell[(r - 1) * width + c] >= 0) link(v, cell[(r - 1) * width + c], step());
+
+                    // Rooms open off corridor cells between junctions, on both sides
+                    if (across == along) continue;
+                    float dx = across ? 0 : ROOM_OFFSET, dy = across ? ROOM_OFFSET : 0;
+                    if (rnd.nextDouble() < roomDensity)
+                        link(v, add(new Node(id + "a", f, temperature(h), gas(h)), x - dx, y - dy), DOOR);
+                    if (rnd.nextDouble() < roomDensity)
+                        link(v, add(new Node(id + "b", f, temperature(h), gas(h)), x + dx, y + dy), DOOR);
+                }
+            }
+
+            if (exits) {
+                for (int r = 0; r < height; r += spacing) {
+                    int   west = r * width, east = west + width - 1;
+                    float y    = r * CELL + f * floorDy;
+                    link(cell[west], add(new Exit(f + "-" + r + "-W", "West Exit " + r, f, true,
+                            temperature(heat[west]), gas(heat[west])), f * floorDx - CELL, y), DOOR);
+                    link(cell[east], add(new Exit(f + "-" + r + "-E", "East Exit " + r, f, true,
+                            temperature(heat[east]), gas(heat[east])), width * CELL + f * floorDx, y), DOOR);
+                }
+            }
+            return cell;
+        }
+
+        // Stairwells between the same junctions of two adjacent floors
+        void stairs(int[] below, int[] above) {
+            int stride = stairwellEvery * spacing;
+            for (int r = 0; r < height; r += stride)
+                for (int c = 0; c < width; c += stride)
+                    link(below[r * width + c], above[r * width + c], STAIRS);
+        }
+
+        // {floor, row, col} of every fire site
+        int[][] placeHazards() {
+            int[][] sites = new int[hazardSites][];
+            for (int i = 0; i < hazardSites; i++) {
+                int f = rnd.nextInt(floors), r, c;
+                if (rnd.nextBoolean()) {
+                    r = rnd.nextInt(corridorRows) * spacing;
+                    c = rnd.nextInt(width);
+                } else {
+                    r = rnd.nextInt(height);
+                    c = rnd.nextInt(corridorCols) * spacing;
+                }
+                sites[i] = new int[] { f, r, c };
+            }
+            return sites;
+        }
+
+        // Heat of every cell of floor f, in [0, 1]: the hottest nearby site wins
+        void heat(float[] heat, int[][] sites, int f) {
+            Arrays.fill(heat, 0f);
+            for (int[] s : sites) {
+                if (s[0] != f) continue;
+                for (int r = Math.max(0, s[1] - hazardRadius); r <= Math.min(height - 1, s[1] + hazardRadius); r++)
+                    for (int c = Math.max(0, s[2] - hazardRadius); c <= Math.min(width - 1, s[2] + hazardRadius); c++) {
+                        int   d = Math.max(Math.abs(r - s[1]), Math.abs(c - s[2]));
+                        float h = 1f - d / (hazardRadius + 1f);
+                        heat[r * width + c] = Math.max(heat[r * width + c], h);
+                    }
+            }
+        }
+
+        int add(Node node, float x, float y) {
+            node.setCoordinates(x, y);
+            if (nodeCount == nodes.length) nodes = Arrays.copyOf(nodes, nodeCount * 2);
+            nodes[nodeCount] = node;
+            return nodeCount++;
+        }
+
+        // Undirected edge: both directions in the edge list and in the nodes' maps
+        void link(int a, int b, float w) {
+            if (edgeCount + 2 > tails.length) {
+                tails   = Arrays.copyOf(tails,   tails.length * 2);
+                heads   = Arrays.copyOf(heads,   tails.length);
+                weights = Arrays.copyOf(weights, tails.length);
+            }
+            tails[edgeCount] = a; heads[edgeCount] = b; weights[edgeCount++] = w;
+            tails[edgeCount] = b; heads[edgeCount] = a; weights[edgeCount++] = w;
+            nodes[a].neighbors.put(nodes[b], boxed[(int) w]);
+            nodes[b].neighbors.put(nodes[a], boxed[(int) w]);
+        }
+
+        float step() { return MIN_STEP + rnd.nextInt(MAX_STEP - MIN_STEP + 1); }
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    private long estimatedNodes(int rows, int cols) {
+        long width     = (long) (cols - 1) * spacing + 1;
+        long height    = (long) (rows - 1) * spacing + 1;
+        long corridor  = rows * width + cols * height - (long) rows * cols;
+        long junctions = (long) rows * cols;
+        long rooms     = Math.round(2 * roomDensity * (corridor - junctions));
+        long exits     = 0;
+        for (int f : exitFloors)
+            if (f < floors) exits += 2L * rows;
+        return floors * (corridor + rooms) + exits;
+    }
+
+    private static float temperature(float heat) {
+        return AMBIENT_TEMPERATURE + heat * (PEAK_TEMPERATURE - AMBIENT_TEMPERATURE);
+    }
+
+    private static float gas(float heat) {
+        return AMBIENT_GAS + heat * (PEAK_GAS - AMBIENT_GAS);
+    }
+}
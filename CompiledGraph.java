@@ -0,0 +1,821 @@
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Immutable compressed-sparse-row (CSR) snapshot of a graph's topology.
+ *
+ * <p>Every node is assigned a dense int index. The outgoing edges of node
+ * {@code v} occupy positions {@code offsets[v] .. offsets[v + 1] - 1} of the
+ * {@code targets} and {@code weights} arrays, so relaxation loops walk flat
+ * primitive arrays instead of {@code HashMap<Node, Float>} entry sets.
+ * Results are mapped back to {@link Node} objects only when they are returned.
+ *
+ * <p>The snapshot captures structure only: passability is still read from the
+ * underlying nodes at query time, so sensor updates are picked up without
+ * recompiling. Adding edges after compilation requires a new snapshot. For
+ * searches that must see one consistent building state while sensors are
+ * being updated, {@link #at(PassabilitySnapshot)} gives a view that reads
+ * passability from an immutable snapshot instead.
+ */
+public final class CompiledGraph {
+
+    // Node table and per-node flags, indexed by dense node id
+    final Node[]    nodes;
+    final boolean[] exit;
+    final int[]     floors;
+
+    // Planar coordinates copied at compile time (NaN when a node has none)
+    final float[] xs;
+    final float[] ys;
+
+    // CSR adjacency: edges of v are [offsets[v], offsets[v + 1])
+    final int[]   offsets;
+    final int[]   targets;
+    final float[] weights;
+
+    // Reverse CSR adjacency: edges into v are [reverseOffsets[v], reverseOffsets[v + 1])
+    final int[]   reverseOffsets;
+    final int[]   reverseSources;
+    final float[] reverseWeights;
+
+    private final Map<Node, Integer> index;
+
+    // Step of the Dial bucket queue: every weight is a multiple of it (0 = float heap only)
+    private final float quantum;
+    private final int   maxSteps;     // largest edge weight in steps
+
+    // Target id standing for a virtual super-sink joined to every passable Exit
+    static final int ANY_EXIT = -1;
+
+    /** Passed as quantization step to pick the coarsest power-of-two step the weights fit. */
+    public static final float AUTO_QUANTUM = -1f;
+
+    // Bucket queues wider than this cost more to scan than a heap saves
+    private static final int MAX_BUCKETS = 1 << 12;
+
+    // Geometric A* heuristic, derived from coordinates and edge weights on first use
+    private volatile GeometricHeuristic geometry;
+
+    // ALT landmark distances, precomputed on first use
+    private volatile LandmarkTable landmarks;
+
+    // Reusable search workspaces sized to this snapshot, shared with its views
+    private final WorkspacePool workspaces;
+
+    // Passability source of a view; null to read the nodes live
+    private final PassabilitySnapshot environment;
+
+    // The graph a view was taken from, or this; owns the lazily built heuristics
+    private final CompiledGraph base;
+
+    /** Point-to-point search strategy for {@link #shortestPath(Node, Node, Algorithm)}. */
+    public enum Algorithm {
+        /** Forward Dijkstra until the target is settled. */
+        DIJKSTRA,
+        /** Dijkstra from both ends over forward and reverse adjacency, meeting in the middle. */
+        BIDIRECTIONAL,
+        /** A* guided by planar distance and the number of floors still to cross. */
+        ASTAR,
+        /** A* guided by precomputed landmark distances and the triangle inequality. */
+        ALT
+    }
+
+    /**
+     * Lower bound on the remaining distance from a node to a target, used to
+     * guide A*. Implementations must be consistent: for every edge (u, v),
+     * {@code lowerBound(u, t) <= weight(u, v) + lowerBound(v, t)}.
+     */
+    interface Heuristic {
+        float lowerBound(int v, int target);
+    }
+
+    private CompiledGraph(Node[] nodes, Map<Node, Integer> index,
+                          int[] offsets, int[] targets, float[] weights, float quantum) {
+        int n = nodes.length;
+        this.nodes   = nodes;
+        this.index   = index;
+        this.exit    = new boolean[n];
+        this.floors  = new int[n];
+        this.xs      = new float[n];
+        this.ys      = new float[n];
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+
+        for (int v = 0; v < n; v++) {
+            exit[v]   = nodes[v] instanceof Exit;
+            floors[v] = nodes[v].getFloor();
+            xs[v]     = nodes[v].getX();
+            ys[v]     = nodes[v].getY();
+        }
+
+        this.reverseOffsets = new int[n + 1];
+        this.reverseSources = new int[targets.length];
+        this.reverseWeights = new float[targets.length];
+        for (int t : targets) reverseOffsets[t + 1]++;
+        for (int v = 0; v < n; v++) reverseOffsets[v + 1] += reverseOffsets[v];
+        int[] fill = Arrays.copyOf(reverseOffsets, n);
+        for (int u = 0; u < n; u++)
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int r = fill[targets[e]]++;
+                reverseSources[r] = u;
+                reverseWeights[r] = weights[e];
+            }
+
+        float fit = 0f;
+        if (quantum > 0) {
+            fit = fits(weights, quantum) ? quantum : 0f;
+        } else if (quantum == AUTO_QUANTUM) {
+            for (float step = 1f; step >= 1f / 1024 && fit == 0f; step /= 2)
+                if (fits(weights, step)) fit = step;
+        }
+        this.quantum  = fit;
+        this.maxSteps = fit > 0 ? maxSteps(weights, fit) : 0;
+        this.workspaces = new WorkspacePool(() -> new SearchWorkspace(n, targets.length,
+                this.quantum > 0 ? new BucketQueue(n, this.quantum, maxSteps) : null));
+        this.environment = null;
+        this.base        = this;
+    }
+
+    // View of `graph` that reads passability from `environment`; shares all arrays
+    private CompiledGraph(CompiledGraph graph, PassabilitySnapshot environment) {
+        this.nodes          = graph.nodes;
+        this.exit           = graph.exit;
+        this.floors         = graph.floors;
+        this.xs             = graph.xs;
+        this.ys             = graph.ys;
+        this.offsets        = graph.offsets;
+        this.targets        = graph.targets;
+        this.weights        = graph.weights;
+        this.reverseOffsets = graph.reverseOffsets;
+        this.reverseSources = graph.reverseSources;
+        this.reverseWeights = graph.reverseWeights;
+        this.index          = graph.index;
+        this.quantum        = graph.quantum;
+        this.maxSteps       = graph.maxSteps;
+        this.workspaces     = graph.workspaces;
+        this.environment    = environment;
+        this.base           = graph.base;
+    }
+
+    /**
+     * Compiles the given nodes into a snapshot.
+     * Neighbours that are not in {@code roots} are appended, so the snapshot
+     * is always closed under adjacency. Plain Dijkstra searches use a bucket
+     * queue when every weight is a multiple of a power-of-two step; see
+     * {@link #of(Collection, float)}.
+     */
+    public static CompiledGraph of(Collection<? extends Node> roots) {
+        return of(roots, AUTO_QUANTUM);
+    }
+
+    /**
+     * Compiles the given nodes into a snapshot with an explicit quantization
+     * step for the Dial bucket queue. If every edge weight is a multiple of
+     * {@code quantum}, and the largest weight spans at most a few thousand
+     * steps, searches without a heuristic use the bucket queue; otherwise
+     * they fall back to the exact float heap.
+     *
+     * @param quantum step in weight units, {@link #AUTO_QUANTUM}, or 0 to always use the heap
+     */
+    public static CompiledGraph of(Collection<? extends Node> roots, float quantum) {
+        Map<Node, Integer> index = new HashMap<>();
+        List<Node>         order = new ArrayList<>();
+        for (Node n : roots)
+            if (index.putIfAbsent(n, order.size()) == null) order.add(n);
+
+        for (int i = 0; i < order.size(); i++)
+            for (Node nx : order.get(i).neighbors.keySet())
+                if (index.putIfAbsent(nx, order.size()) == null) order.add(nx);
+
+        Node[] nodes   = order.toArray(new Node[0]);
+        int[]  offsets = new int[nodes.length + 1];
+        for (int v = 0; v < nodes.length; v++) offsets[v + 1] = offsets[v] + nodes[v].neighbors.size();
+
+        int[]   targets = new int[offsets[nodes.length]];
+        float[] weights = new float[offsets[nodes.length]];
+        for (int v = 0; v < nodes.length; v++) {
+            int e = offsets[v];
+            for (Map.Entry<Node, Float> nb : nodes[v].neighbors.entrySet()) {
+                targets[e] = index.get(nb.getKey());
+                weights[e] = nb.getValue();
+                e++;
+            }
+        }
+        return new CompiledGraph(nodes, index, offsets, targets, weights, quantum);
+    }
+
+    /**
+     * Bulk construction for generated buildings: compiles {@code nodes} with
+     * the directed edges {@code tails[i] -> heads[i]} of weight
+     * {@code weights[i]}, for i below {@code edgeCount}, given as indices into
+     * {@code nodes}. The edge list need not be sorted; one counting pass lays
+     * it out in CSR order, keeping the given order among the edges of a node,
+     * so millions of edges compile without a map lookup per edge. The nodes'
+     * own adjacency maps are neither read nor changed.
+     *
+     * @param quantum as for {@link #of(Collection, float)}
+     */
+    static CompiledGraph ofEdges(Node[] nodes, int[] tails, int[] heads, float[] weights,
+                                 int edgeCount, float quantum) {
+        int n = nodes.length;
+        Map<Node, Integer> index = new HashMap<>(n + n / 3 + 1);
+        for (int v = 0; v < n; v++)
+            if (index.put(nodes[v], v) != null)
+                throw new IllegalArgumentException("Node " + nodes[v].getId() + " listed twice");
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            if (tails[i] < 0 || tails[i] >= n || heads[i] < 0 || heads[i] >= n || weights[i] < 0)
+                throw new IllegalArgumentException("Invalid edge " + tails[i] + " -> " + heads[i]);
+            offsets[tails[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+
+        int[]   targets = new int[edgeCount];
+        float[] sorted  = new float[edgeCount];
+        int[]   fill    = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < edgeCount; i++) {
+            int e = fill[tails[i]]++;
+            targets[e] = heads[i];
+            sorted[e]  = weights[i];
+        }
+        return new CompiledGraph(nodes, index, offsets, targets, sorted, quantum);
+    }
+
+    /**
+     * A new snapshot of the same topology, sharing the CSR arrays but with
+     * its own workspaces and no heuristics built yet, as if just compiled.
+     * Lets benchmarks measure cold queries without compiling again.
+     */
+    CompiledGraph recompile() {
+        return new CompiledGraph(nodes, index, offsets, targets, weights, quantum);
+    }
+
+    /**
+     * A view of this graph whose searches read passability from the given
+     * snapshot instead of the live nodes, so a query sees one consistent
+     * building state however the sensors change meanwhile. Views share all
+     * arrays, workspaces and heuristics with this graph and cost O(1).
+     *
+     * @param snapshot state published by an {@link EnvironmentWriter} over this graph
+     */
+    public CompiledGraph at(PassabilitySnapshot snapshot) {
+        return new CompiledGraph(base, snapshot);
+    }
+
+    // -------------------------
+    //  Structure accessors
+    // -------------------------
+
+    public int nodeCount() { return nodes.length; }
+    public int edgeCount() { return targets.length; }
+
+    /** Returns the node with the given index. */
+    public Node node(int v) { return nodes[v]; }
+
+    /** Quantization step of the bucket queue, or 0 if searches use the float heap. */
+    public float quantum() { return quantum; }
+
+    /** Returns the index of the given node, or -1 if it is not part of this snapshot. */
+    public int indexOf(Node node) {
+        Integer v = index.get(node);
+        return v == null ? -1 : v;
+    }
+
+    // -------------------------
+    //  Node-level API
+    // -------------------------
+
+    /**
+     * Snapshot equivalent of {@link Node#findNearestExit()}.
+     *
+     * @return the nearest passable Exit, or empty if none is reachable
+     */
+    public Optional<Exit> findNearestExit(Node source) {
+        RouteQueryEvent event = RouteQueryEvent.start();
+        SearchWorkspace ws    = acquire();
+        try {
+            long settled = ws.settled, pushes = ws.pushes;
+            int  e       = nearestExit(require(source));
+            if (event != null && event.shouldCommit())
+                event.complete(RouteQueryEvent.FIND_NEAREST_EXIT, source, null, ws.settled - settled,
+                               ws.pushes - pushes, e < 0 ? Float.NaN : ws.dist(e), false);
+            return e < 0 ? Optional.empty() : Optional.of((Exit) nodes[e]);
+        } finally {
+            release(ws);
+        }
+    }
+
+    /**
+     * Snapshot equivalent of {@link Node#shortestPathTo(Node)}.
+     *
+     * @return ordered node list from source to target, or empty if unreachable
+     */
+    public Optional<List<Node>> shortestPath(Node source, Node target) {
+        return shortestPath(source, target, Algorithm.DIJKSTRA);
+    }
+
+    /**
+     * Same as {@link #shortestPath(Node, Node)} using the given search strategy.
+     * All strategies return a path of the same (shortest) distance.
+     */
+    public Optional<List<Node>> shortestPath(Node source, Node target, Algorithm algorithm) {
+        int[] path = searchPath(source, target, algorithm);
+        return path == null ? Optional.empty() : Optional.of(toNodes(path));
+    }
+
+    /**
+     * Same as {@link #shortestPath(Node, Node, Algorithm)}, returned with its
+     * distance over this snapshot's edge weights.
+     *
+     * @return the route from source to target, or empty if unreachable
+     */
+    public Optional<PathCandidate> shortestRoute(Node source, Node target, Algorithm algorithm) {
+        int[] path = searchPath(source, target, algorithm);
+        return path == null ? Optional.empty() : Optional.of(new PathCandidate(pathDistance(path), path, nodes));
+    }
+
+    /**
+     * Snapshot equivalent of {@link Node#findKShortestPaths(Node, int)}.
+     *
+     * @return up to K PathCandidate objects in ascending distance order
+     */
+    public List<PathCandidate> findKShortestPaths(Node source, Node target, int k) {
+        return findKShortestPaths(source, target, k, Algorithm.DIJKSTRA);
+    }
+
+    /**
+     * Same as {@link #findKShortestPaths(Node, Node, int)} with the spur searches
+     * run by the given strategy. Spur searches are unidirectional, so
+     * {@link Algorithm#BIDIRECTIONAL} behaves like {@link Algorithm#DIJKSTRA} here.
+     */
+    public List<PathCandidate> findKShortestPaths(Node source, Node target, int k, Algorithm algorithm) {
+        return findKShortestPaths(source, target, k, algorithm, null);
+    }
+
+    /**
+     * Same as {@link #findKShortestPaths(Node, Node, int, Algorithm)} with the
+     * spur searches of each iteration fanned out over the given pool. The
+     * result is identical to the sequential run.
+     *
+     * @param pool pool for the spur searches, or null to run them on the calling thread
+     */
+    public List<PathCandidate> findKShortestPaths(Node source, Node target, int k,
+                                                  Algorithm algorithm, ForkJoinPool pool) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        int s = require(source), t = require(target);
+        return kShortestPaths(source, target, new KShortestPaths(this, s, t, heuristic(algorithm), pool), k);
+    }
+
+    /**
+     * The K shortest simple paths from source to any passable Exit, in one run
+     * of Yen's algorithm. All passable exits are treated as a single virtual
+     * target, so the result is the global top K across every exit, the same as
+     * merging per-exit runs but at the cost of one.
+     *
+     * @return up to K PathCandidate objects in ascending distance order
+     */
+    public List<PathCandidate> findKShortestPathsToExits(Node source, int k) {
+        return findKShortestPathsToExits(source, k, null);
+    }
+
+    /**
+     * Same as {@link #findKShortestPathsToExits(Node, int)} with the spur
+     * searches fanned out over the given pool.
+     *
+     * @param pool pool for the spur searches, or null to run them on the calling thread
+     */
+    public List<PathCandidate> findKShortestPathsToExits(Node source, int k, ForkJoinPool pool) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        return kShortestPaths(source, null, new KShortestPaths(this, require(source), ANY_EXIT, null, pool), k);
+    }
+
+    /**
+     * Lazy form of {@link #findKShortestPaths(Node, Node, int)}: yields the
+     * next-shortest simple path on demand, keeping Yen's state between calls.
+     */
+    public KShortestPaths iterateShortestPaths(Node source, Node target) {
+        return iterateShortestPaths(source, target, Algorithm.DIJKSTRA, null);
+    }
+
+    /**
+     * Lazy form of {@link #findKShortestPaths(Node, Node, int, Algorithm, ForkJoinPool)}.
+     *
+     * @param pool pool for the spur searches, or null to run them on the calling thread
+     */
+    public KShortestPaths iterateShortestPaths(Node source, Node target, Algorithm algorithm, ForkJoinPool pool) {
+        return new KShortestPaths(this, require(source), require(target), heuristic(algorithm), pool);
+    }
+
+    /** Lazy form of {@link #findKShortestPathsToExits(Node, int)}. */
+    public KShortestPaths iterateShortestPathsToExits(Node source) {
+        return iterateShortestPathsToExits(source, null);
+    }
+
+    /**
+     * Lazy form of {@link #findKShortestPathsToExits(Node, int, ForkJoinPool)}.
+     *
+     * @param pool pool for the spur searches, or null to run them on the calling thread
+     */
+    public KShortestPaths iterateShortestPathsToExits(Node source, ForkJoinPool pool) {
+        return new KShortestPaths(this, require(source), ANY_EXIT, null, pool);
+    }
+
+    // -------------------------
+    //  Index-level searches
+    // -------------------------
+
+    /** Dijkstra to the nearest passable Exit. Returns its index, or -1. */
+    int nearestExit(int source) {
+        return nearestExit(source, false, false, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Dijkstra to the nearest passable Exit. With {@code exclusions}, nodes and
+     * edges excluded in the workspace are skipped; with {@code skipSource}, the
+     * source is not accepted as its own exit (its edge to the super-sink is
+     * removed). The workspace keeps the labels, so the path can be read back
+     * with {@link SearchWorkspace#pathTo(int)}.
+     *
+     * @param maxDist the search gives up once every remaining exit is farther than this
+     * @return the index of the exit reached, or -1
+     */
+    int nearestExit(int source, boolean exclusions, boolean skipSource, float maxDist) {
+        SearchWorkspace ws = acquire();
+        try {
+            SearchQueue heap = ws.queue();
+            ws.begin();
+            ws.label(source, 0f, -1);
+            heap.offer(source, 0f);
+            ws.pushes++;
+
+            while (!heap.isEmpty()) {
+                int   u  = heap.poll();
+                float du = ws.dist(u);
+                ws.settled++;
+
+                if (du > maxDist) return -1;
+                if (exit[u] && passable(u) && !(skipSource && u == source)) return u;
+
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int v = targets[e];
+                    if (exclusions && (ws.excludedNode(v) || ws.excludedEdge(e))) continue;
+                    if (!passable(v))                                            continue;
+                    float nd = du + weights[e];
+                    if (nd < ws.dist(v)) {
+                        ws.label(v, nd, u);
+                        heap.offer(v, nd);
+                        ws.pushes++;
+                    }
+                }
+            }
+            return -1;
+        } finally {
+            release(ws);
+        }
+    }
+
+    /**
+     * Dijkstra from source to target, or A* when a heuristic is given. Only
+     * traverses passable nodes; the target itself is always allowed as a
+     * terminal. With {@code exclusions}, nodes and edges excluded in the
+     * calling thread's workspace are skipped.
+     *
+     * @return node indices from source to target, or null if unreachable
+     */
+    int[] shortestPath(int source, int target, Heuristic h, boolean exclusions) {
+        return shortestPath(source, target, h, exclusions, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Same as {@link #shortestPath(int, int, Heuristic, boolean)}, but gives up
+     * once the smallest key on the heap, a lower bound on the length of any
+     * path still to be found, exceeds {@code maxDist}.
+     *
+     * @return node indices from source to target, or null if unreachable within maxDist
+     */
+    int[] shortestPath(int source, int target, Heuristic h, boolean exclusions, float maxDist) {
+        SearchWorkspace ws = acquire();
+        try {
+            SearchQueue heap = h == null ? ws.queue() : ws.heap;
+            ws.begin();
+            ws.label(source, 0f, -1);
+            heap.offer(source, h == null ? 0f : h.lowerBound(source, target));
+            ws.pushes++;
+
+            while (!heap.isEmpty()) {
+                if (heap.minKey() > maxDist) return null;
+                int u = heap.poll();
+                ws.settled++;
+                if (u == target) break;
+                float du = ws.dist(u);
+
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int v = targets[e];
+                    if (exclusions && (ws.excludedNode(v) || ws.excludedEdge(e))) continue;
+                    if (!passable(v) && v != target)                             continue;
+
+                    float nd = du + weights[e];
+                    if (nd < ws.dist(v)) {
+                        ws.label(v, nd, u);
+                        heap.offer(v, h == null ? nd : nd + h.lowerBound(v, target));
+                        ws.pushes++;
+                    }
+                }
+            }
+
+            return ws.reached(target) ? ws.pathTo(target) : null;
+        } finally {
+            release(ws);
+        }
+    }
+
+    /**
+     * Bidirectional Dijkstra: a forward search from the source and a backward
+     * search from the target over reverse edges, always expanding the side with
+     * the smaller key, until the two frontiers can no longer improve the best
+     * meeting edge found so far. Same passability rules as
+     * {@link #shortestPath(int, int, Heuristic, boolean)}.
+     *
+     * @return node indices from source to target, or null if unreachable
+     */
+    int[] bidirectionalPath(int source, int target) {
+        if (source == target) return new int[] { source };
+
+        SearchWorkspace fw = acquire();
+        try {
+            SearchWorkspace bw = fw.reverse();
+            SearchQueue     fq = fw.queue();
+            SearchQueue     bq = bw.queue();
+            fw.begin();
+            bw.begin();
+            fw.label(source, 0f, -1);
+            fq.offer(source, 0f);
+            bw.label(target, 0f, -1);
+            bq.offer(target, 0f);
+            fw.pushes += 2;                     // both halves report through the forward workspace
+
+            float best     = Float.MAX_VALUE;
+            int   meetFrom = -1, meetTo = -1;   // meeting edge meetFrom -> meetTo
+
+            while (true) {
+                float kf = fq.isEmpty() ? Float.MAX_VALUE : fq.minKey();
+                float kb = bq.isEmpty() ? Float.MAX_VALUE : bq.minKey();
+                if (kf + kb >= best) break;
+
+                if (kf <= kb) {
+                    int u = fq.poll();
+                    fw.settled++;
+                    if (u == target) continue;          // the target is a terminal only
+                    float du = fw.dist(u);
+                    for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                        int v = targets[e];
+                        if (!passable(v) && v != target) continue;
+                        float nd = du + weights[e];
+                        if (nd < fw.dist(v)) {
+                            fw.label(v, nd, u);
+                            fq.offer(v, nd);
+                            fw.pushes++;
+                        }
+                        if (bw.reached(v) && nd + bw.dist(v) < best) {
+                            best = nd + bw.dist(v);
+                            meetFrom = u;
+                            meetTo   = v;
+                        }
+                    }
+                } else {
+                    int x = bq.poll();
+                    fw.settled++;
+                    if (x == source) continue;          // the source never acts as an intermediate
+                    float dx = bw.dist(x);
+                    for (int r = reverseOffsets[x]; r < reverseOffsets[x + 1]; r++) {
+                        int p = reverseSources[r];
+                        if (!passable(p) && p != source) continue;
+                        float nd = dx + reverseWeights[r];
+                        if (nd < bw.dist(p)) {
+                            bw.label(p, nd, x);
+                            bq.offer(p, nd);
+                            fw.pushes++;
+                        }
+                        if (fw.reached(p) && nd + fw.dist(p) < best) {
+                            best = nd + fw.dist(p);
+                            meetFrom = p;
+                            meetTo   = x;
+                        }
+                    }
+                }
+            }
+
+            if (meetFrom < 0) return null;
+            int head = 0, tail = 0;
+            for (int at = meetFrom; at != -1; at = fw.prev(at)) head++;
+            for (int at = meetTo;   at != -1; at = bw.prev(at)) tail++;
+            int[] path = new int[head + tail];
+            int i = head;
+            for (int at = meetFrom; at != -1; at = fw.prev(at)) path[--i] = at;
+            i = head;
+            for (int at = meetTo;   at != -1; at = bw.prev(at)) path[i++] = at;
+            return path;
+        } finally {
+            release(fw);
+        }
+    }
+
+    /**
+     * One spur search of Yen's algorithm, towards a node or the exit super-sink.
+     *
+     * @param maxDist spurs longer than this are not needed; the search may give up beyond it
+     */
+    int[] spurPath(int spurNode, int target, Heuristic h, boolean exclusions, boolean sinkUsed, float maxDist) {
+        if (target != ANY_EXIT) return shortestPath(spurNode, target, h, exclusions, maxDist);
+        SearchWorkspace ws = acquire();
+        try {
+            int e = nearestExit(spurNode, exclusions, sinkUsed, maxDist);
+            return e < 0 ? null : ws.pathTo(e);
+        } finally {
+            release(ws);
+        }
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    int require(Node node) {
+        int v = indexOf(node);
+        if (v < 0)
+            throw new IllegalArgumentException("Node " + node.getId() + " is not part of this graph snapshot");
+        return v;
+    }
+
+    /** The snapshot a view reads passability from, or null if it reads the live nodes. */
+    PassabilitySnapshot environment() {
+        return environment;
+    }
+
+    /** Passability of node v: from the pinned snapshot for a view, else read live. */
+    boolean passable(int v) {
+        return environment != null ? environment.passable(v) : nodes[v].isPassable();
+    }
+
+    /** Heuristic for the given strategy, or null for plain Dijkstra. */
+    Heuristic heuristic(Algorithm algorithm) {
+        switch (algorithm) {
+            case ASTAR: return geometry();
+            case ALT:   return landmarks();
+            default:    return null;
+        }
+    }
+
+    /** The ALT landmark table, precomputed on first use. */
+    LandmarkTable landmarks() {
+        if (base != this) return base.landmarks();
+        LandmarkTable l = landmarks;
+        if (l == null) {
+            synchronized (this) {
+                l = landmarks;
+                if (l == null) landmarks = l = new LandmarkTable(this, LandmarkTable.DEFAULT_LANDMARKS);
+            }
+        }
+        return l;
+    }
+
+    /** The geometric A* heuristic, computed on first use. */
+    GeometricHeuristic geometry() {
+        if (base != this) return base.geometry();
+        GeometricHeuristic g = geometry;
+        if (g == null) geometry = g = new GeometricHeuristic(this);
+        return g;
+    }
+
+    /**
+     * Lends the calling thread a search workspace until the matching
+     * {@link #release}. Nested calls on one thread get the same workspace, so
+     * a search can leave its labels for the caller to read back.
+     */
+    SearchWorkspace acquire() {
+        return workspaces.acquire();
+    }
+
+    /** Returns a workspace from {@link #acquire()}; the outermost release puts it back in the pool. */
+    void release(SearchWorkspace ws) {
+        workspaces.release(ws);
+    }
+
+    /** Returns the CSR index of edge from -> to, or -1 if there is none. */
+    int edgeIndex(int from, int to) {
+        for (int e = offsets[from]; e < offsets[from + 1]; e++)
+            if (targets[e] == to) return e;
+        return -1;
+    }
+
+    /** Sums edge weights along an index path. Returns MAX_VALUE if any edge is missing. */
+    float pathDistance(int[] path) {
+        float total = 0f;
+        for (int i = 0; i < path.length - 1; i++) {
+            int e = edgeIndex(path[i], path[i + 1]);
+            if (e < 0) return Float.MAX_VALUE;
+            total += weights[e];
+        }
+        return total;
+    }
+
+    /** True if every weight is a whole number of steps and the largest fits the bucket limit. */
+    private static boolean fits(float[] weights, float step) {
+        for (float w : weights) {
+            float q = w / step;
+            if (q < 0 || q > MAX_BUCKETS - 2 || Math.abs(q - Math.round(q)) > 1e-4f) return false;
+        }
+        return true;
+    }
+
+    private static int maxSteps(float[] weights, float step) {
+        int max = 0;
+        for (float w : weights) max = Math.max(max, Math.round(w / step));
+        return max;
+    }
+
+    /** One point-to-point search with the given strategy, reported as one {@link RouteQueryEvent}. */
+    private int[] searchPath(Node source, Node target, Algorithm algorithm) {
+        int s = require(source), t = require(target);
+        RouteQueryEvent event = RouteQueryEvent.start();
+        SearchWorkspace ws    = acquire();
+        try {
+            long  settled = ws.settled, pushes = ws.pushes;
+            int[] path;
+            switch (algorithm) {
+                case BIDIRECTIONAL: path = bidirectionalPath(s, t);                          break;
+                default:            path = shortestPath(s, t, heuristic(algorithm), false);      break;
+            }
+            if (event != null && event.shouldCommit())
+                event.complete(RouteQueryEvent.SHORTEST_PATH_TO, source, target, ws.settled - settled,
+                               ws.pushes - pushes, path == null ? Float.NaN : pathDistance(path), false);
+            return path;
+        } finally {
+            release(ws);
+        }
+    }
+
+    /**
+     * Yen's K-Shortest Paths: the first K paths of a fresh enumeration, limited
+     * to K so its candidate store stays bounded, reported as one
+     * {@link RouteQueryEvent} with the work of all its spur searches.
+     *
+     * @param target the target node, or null for the exit super-sink
+     */
+    private List<PathCandidate> kShortestPaths(Node source, Node target, KShortestPaths paths, int k) {
+        RouteQueryEvent event = RouteQueryEvent.start();
+        List<PathCandidate> result = toCandidates(paths.limit(k).take(k));
+        if (event != null && event.shouldCommit())
+            event.complete(RouteQueryEvent.FIND_K_SHORTEST_PATHS, source, target, paths.settled(), paths.pushes(),
+                           result.isEmpty() ? Float.NaN : result.get(0).totalDistance, false);
+        return result;
+    }
+
+    private List<PathCandidate> toCandidates(List<int[]> paths) {
+        List<PathCandidate> result = new ArrayList<>(paths.size());
+        for (int[] path : paths) result.add(new PathCandidate(pathDistance(path), path, nodes));
+        return result;
+    }
+
+    List<Node> toNodes(int[] path) {
+        List<Node> list = new ArrayList<>(path.length);
+        for (int v : path) list.add(nodes[v]);
+        return list;
+    }
+
+    /**
+     * Workspaces lent out one per searching thread and pooled in between, so
+     * any thread, including a short-lived one per request, reuses them.
+     * At most {@link #MAX_IDLE} idle workspaces are kept; extra ones are dropped.
+     */
+    private static final class WorkspacePool {
+        private static final int MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+        private final Supplier<SearchWorkspace>           factory;
+        private final ArrayBlockingQueue<SearchWorkspace> idle  = new ArrayBlockingQueue<>(MAX_IDLE);
+        private final ThreadLocal<SearchWorkspace>        lease = new ThreadLocal<>();   // the thread's current one
+
+        WorkspacePool(Supplier<SearchWorkspace> factory) { this.factory = factory; }
+
+        SearchWorkspace acquire() {
+            SearchWorkspace ws = lease.get();
+            if (ws == null) {
+                ws = idle.poll();
+                if (ws == null) ws = factory.get();
+                lease.set(ws);
+            }
+            ws.leases++;
+            return ws;
+        }
+
+        void release(SearchWorkspace ws) {
+            if (--ws.leases > 0) return;
+            lease.set(null);            // keeps the thread's map entry, so the next query allocates nothing
+            idle.offer(ws);             // dropped when the pool is full
+        }
+    }
+}
@@ -0,0 +1,608 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Customizable contraction hierarchy (CCH) over a {@link CompiledGraph}.
+ *
+ * <p>Preprocessing is split in two phases:
+ * <ol>
+ *   <li><b>Metric-independent</b> (constructor, run once per topology): a nested
+ *       dissection order is computed from the undirected building structure and
+ *       the graph is contracted symbolically, producing the chordal "upward"
+ *       arc set and its elimination tree. Nothing here depends on weights or
+ *       passability.</li>
+ *   <li><b>Customization</b> ({@link #customize()}): arc weights are filled in
+ *       bottom-up from the original edges and lower triangles, skipping any
+ *       triangle whose middle node is impassable. Nodes on the same level of
+ *       the hierarchy are independent and are processed in parallel.</li>
+ * </ol>
+ *
+ * <p>Queries walk the elimination-tree ancestors of source and target, so
+ * they need no priority queue and touch only a few hundred arcs on building
+ * graphs. Passability follows {@link Node#shortestPathTo(Node)}: intermediate
+ * nodes must be passable, the target is always allowed as a terminal.
+ *
+ * <p>After {@link #attach()}, any passability change marks the current metric
+ * stale and the next query re-customizes. Each customization publishes a new
+ * immutable metric, so queries already running keep a consistent view.
+ */
+public final class ContractionHierarchy implements Node.PassabilityListener {
+
+    // Cells at most this large are ordered directly instead of being dissected further
+    private static final int LEAF_SIZE = 16;
+
+    // Levels smaller than this are customized sequentially; forking would cost more
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private static final int NONE = -1;
+
+    private final CompiledGraph graph;
+
+    // Node order: rank 0 is contracted first, separators get the highest ranks
+    private final int[] order;       // rank -> node id
+    private final int[] rank;        // node id -> rank
+    private final int[] parent;      // elimination-tree parent rank, NONE at a root
+
+    // Upward arcs (lo -> hi by rank), grouped by lo and sorted by hi
+    private final int[] upOffsets;
+    private final int[] upHead;
+    private final int[] arcTail;
+
+    // The same arcs seen from their upper end, grouped by hi and sorted by lo
+    private final int[] downOffsets;
+    private final int[] downTail;
+    private final int[] downArc;
+
+    // Original edge weights per arc in both directions, MAX_VALUE where no edge exists
+    private final float[] initialUp;
+    private final float[] initialDown;
+
+    // Ranks grouped by hierarchy level; a level only depends on lower levels
+    private final int[] levelOffsets;
+    private final int[] levelRanks;
+
+    private volatile Metric  metric;
+    private volatile boolean stale;
+
+    private final ThreadLocal<QueryState> states;
+
+    /** Customized weights for one passability state; never mutated once published. */
+    private static final class Metric {
+        final float[]   up, down;          // arc weight lo -> hi and hi -> lo
+        final int[]     upMid, downMid;    // middle rank of the shortcut, NONE for an original edge
+        final boolean[] passable;          // by rank, as seen by this customization
+        Metric(int arcs, int nodes) {
+            up       = new float[arcs];
+            down     = new float[arcs];
+            upMid    = new int[arcs];
+            downMid  = new int[arcs];
+            passable = new boolean[nodes];
+        }
+    }
+
+    /** Per-thread query labels, indexed by rank. */
+    private static final class QueryState {
+        final float[] forward, backward;
+        final int[]   forwardArc, backwardArc;
+        final int[]   mark;
+        int stamp;
+        QueryState(int n) {
+            forward     = new float[n];
+            backward    = new float[n];
+            forwardArc  = new int[n];
+            backwardArc = new int[n];
+            mark        = new int[n];
+        }
+    }
+
+    /**
+     * Runs the metric-independent preprocessing and an initial customization.
+     */
+    public ContractionHierarchy(CompiledGraph graph) {
+        int n = graph.nodeCount();
+        this.graph = graph;
+
+        // Undirected, duplicate-free view of the topology
+        int[][] undirected = undirectedAdjacency(graph);
+
+        this.order = nestedDissectionOrder(undirected, graph.floors);
+        this.rank  = new int[n];
+        for (int r = 0; r < n; r++) rank[order[r]] = r;
+
+        // Symbolic contraction: eliminating r turns its upper neighbours into a clique,
+        // which is recorded by merging them into the lowest one (its elimination-tree parent).
+        int[][] upper = new int[n][];
+        for (int r = 0; r < n; r++) {
+            int[] nb  = undirected[order[r]];
+            int[] tmp = new int[nb.length];
+            int   c   = 0;
+            for (int v : nb) if (rank[v] > r) tmp[c++] = rank[v];
+            upper[r] = Arrays.copyOf(tmp, c);
+            Arrays.sort(upper[r]);
+        }
+        this.parent = new int[n];
+        for (int r = 0; r < n; r++) {
+            if (upper[r].length == 0) { parent[r] = NONE; continue; }
+            int p = upper[r][0];
+            parent[r] = p;
+            upper[p] = union(upper[p], upper[r], p);
+        }
+
+        this.upOffsets = new int[n + 1];
+        for (int r = 0; r < n; r++) upOffsets[r + 1] = upOffsets[r] + upper[r].length;
+        int arcs = upOffsets[n];
+        this.upHead  = new int[arcs];
+        this.arcTail = new int[arcs];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(upper[r], 0, upHead, upOffsets[r], upper[r].length);
+            Arrays.fill(arcTail, upOffsets[r], upOffsets[r + 1], r);
+        }
+
+        // Downward view; arcs are scanned in increasing tail order, so each group is sorted
+        this.downOffsets = new int[n + 1];
+        this.downTail    = new int[arcs];
+        this.downArc     = new int[arcs];
+        for (int a = 0; a < arcs; a++) downOffsets[upHead[a] + 1]++;
+        for (int r = 0; r < n; r++) downOffsets[r + 1] += downOffsets[r];
+        int[] fill = Arrays.copyOf(downOffsets, n);
+        for (int a = 0; a < arcs; a++) {
+            int i = fill[upHead[a]]++;
+            downTail[i] = arcTail[a];
+            downArc[i]  = a;
+        }
+
+        this.initialUp   = new float[arcs];
+        this.initialDown = new float[arcs];
+        Arrays.fill(initialUp, Float.MAX_VALUE);
+        Arrays.fill(initialDown, Float.MAX_VALUE);
+        for (int u = 0; u < n; u++)
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int ru = rank[u], rv = rank[graph.targets[e]];
+                if (ru == rv) continue;
+                float w = graph.weights[e];
+                if (ru < rv) {
+                    int a = arc(ru, rv);
+                    initialUp[a] = Math.min(initialUp[a], w);
+                } else {
+                    int a = arc(rv, ru);
+                    initialDown[a] = Math.min(initialDown[a], w);
+                }
+            }
+
+        // Level = 1 + highest level among lower neighbours
+        int[] level = new int[n];
+        int   depth = 0;
+        for (int r = 0; r < n; r++) {
+            for (int i = downOffsets[r]; i < downOffsets[r + 1]; i++)
+                level[r] = Math.max(level[r], level[downTail[i]] + 1);
+            depth = Math.max(depth, level[r] + 1);
+        }
+        this.levelOffsets = new int[depth + 1];
+        this.levelRanks   = new int[n];
+        for (int r = 0; r < n; r++) levelOffsets[level[r] + 1]++;
+        for (int l = 0; l < depth; l++) levelOffsets[l + 1] += levelOffsets[l];
+        int[] next = Arrays.copyOf(levelOffsets, depth);
+        for (int r = 0; r < n; r++) levelRanks[next[level[r]]++] = r;
+
+        this.states = ThreadLocal.withInitial(() -> new QueryState(n));
+        customize();
+    }
+
+    public int arcCount() { return upHead.length; }
+
+    // -------------------------
+    //  Customization
+    // -------------------------
+
+    /**
+     * Re-applies the current passability of every node to the arc weights and
+     * publishes the result for subsequent queries.
+     */
+    public synchronized void customize() {
+        stale = false;
+        int    n = order.length;
+        Metric m = new Metric(upHead.length, n);
+        for (int r = 0; r < n; r++) m.passable[r] = graph.passable(order[r]);
+        System.arraycopy(initialUp, 0, m.up, 0, initialUp.length);
+        System.arraycopy(initialDown, 0, m.down, 0, initialDown.length);
+        Arrays.fill(m.upMid, NONE);
+        Arrays.fill(m.downMid, NONE);
+
+        for (int l = 0; l + 1 < levelOffsets.length; l++) {
+            int from = levelOffsets[l], to = levelOffsets[l + 1];
+            if (to - from < PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) customizeArcsOf(levelRanks[i], m);
+            } else {
+                IntStream.range(from, to).parallel().forEach(i -> customizeArcsOf(levelRanks[i], m));
+            }
+        }
+        metric = m;
+    }
+
+    /** Relaxes every upward arc of rank u through its lower triangles. */
+    private void customizeArcsOf(int u, Metric m) {
+        for (int a = upOffsets[u]; a < upOffsets[u + 1]; a++) {
+            int v = upHead[a];
+            // Lower triangles {x, u, v}: merge the sorted lower-neighbour lists of u and v
+            int i = downOffsets[u], iEnd = downOffsets[u + 1];
+            int j = downOffsets[v], jEnd = downOffsets[v + 1];
+            while (i < iEnd && j < jEnd) {
+                int xu = downTail[i], xv = downTail[j];
+                if (xu < xv) { i++; continue; }
+                if (xv < xu) { j++; continue; }
+                if (m.passable[xu]) {
+                    int   aXU = downArc[i], aXV = downArc[j];
+                    float viaUp   = m.down[aXU] + m.up[aXV];     // u -> x -> v
+                    float viaDown = m.down[aXV] + m.up[aXU];     // v -> x -> u
+                    if (viaUp < m.up[a])     { m.up[a]   = viaUp;   m.upMid[a]   = xu; }
+                    if (viaDown < m.down[a]) { m.down[a] = viaDown; m.downMid[a] = xu; }
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /** Re-customizes automatically on the next query after any passability change. */
+    public void attach() {
+        for (Node node : graph.nodes) node.addPassabilityListener(this);
+    }
+
+    /** Stops tracking passability changes. */
+    public void detach() {
+        for (Node node : graph.nodes) node.removePassabilityListener(this);
+    }
+
+    @Override
+    public void passabilityChanged(Node node, boolean passable) {
+        stale = true;
+    }
+
+    // -------------------------
+    //  Queries
+    // -------------------------
+
+    /**
+     * Shortest path from source to target under the customized passability.
+     *
+     * @return ordered node list from source to target, or empty if unreachable
+     */
+    public Optional<List<Node>> shortestPath(Node source, Node target) {
+        int[] path = shortestPath(graph.require(source), graph.require(target));
+        return path == null ? Optional.empty() : Optional.of(graph.toNodes(path));
+    }
+
+    /**
+     * Elimination-tree query between snapshot node ids.
+     *
+     * @return node ids from source to target, or null if unreachable
+     */
+    int[] shortestPath(int source, int target) {
+        if (source == target) return new int[] { source };
+        Metric     m = currentMetric();
+        QueryState q = states.get();
+        if (++q.stamp == 0) {
+            Arrays.fill(q.mark, 0);
+            q.stamp = 1;
+        }
+        int rs = rank[source], rt = rank[target];
+
+        for (int x = rs; x != NONE; x = parent[x]) {
+            q.forward[x]    = Float.MAX_VALUE;
+            q.forwardArc[x] = NONE;
+            q.mark[x]       = q.stamp;
+        }
+        for (int x = rt; x != NONE; x = parent[x]) {
+            q.backward[x]    = Float.MAX_VALUE;
+            q.backwardArc[x] = NONE;
+        }
+        q.forward[rs]  = 0f;
+        q.backward[rt] = 0f;
+
+        // Upward sweeps; only the endpoints may relay without being passable
+        for (int x = rs; x != NONE; x = parent[x]) {
+            float dx = q.forward[x];
+            if (dx == Float.MAX_VALUE || (x != rs && !m.passable[x])) continue;
+            for (int a = upOffsets[x]; a < upOffsets[x + 1]; a++) {
+                float nd = dx + m.up[a];
+                if (nd < q.forward[upHead[a]]) {
+                    q.forward[upHead[a]]    = nd;
+                    q.forwardArc[upHead[a]] = a;
+                }
+            }
+        }
+        for (int x = rt; x != NONE; x = parent[x]) {
+            float dx = q.backward[x];
+            if (dx == Float.MAX_VALUE || (x != rt && !m.passable[x])) continue;
+            for (int a = upOffsets[x]; a < upOffsets[x + 1]; a++) {
+                float nd = dx + m.down[a];
+                if (nd < q.backward[upHead[a]]) {
+                    q.backward[upHead[a]]    = nd;
+                    q.backwardArc[upHead[a]] = a;
+                }
+            }
+        }
+
+        // The meeting node lies on both ancestor chains
+        float best = Float.MAX_VALUE;
+        int   meet = NONE;
+        for (int x = rt; x != NONE; x = parent[x]) {
+            if (q.mark[x] != q.stamp) continue;
+            if (x != rs && x != rt && !m.passable[x]) continue;
+            float d = q.forward[x] + q.backward[x];
+            if (q.forward[x] != Float.MAX_VALUE && q.backward[x] != Float.MAX_VALUE && d < best) {
+                best = d;
+                meet = x;
+            }
+        }
+        if (meet == NONE) return null;
+
+        // Unpack: source -> meet over upward arcs, then meet -> target over downward arcs
+        IntList ranks = new IntList();
+        IntList chain = new IntList();
+        for (int x = meet; x != rs; x = arcTail[q.forwardArc[x]]) chain.add(q.forwardArc[x]);
+        ranks.add(rs);
+        for (int i = chain.size - 1; i >= 0; i--) {
+            int a = chain.data[i];
+            unpack(arcTail[a], upHead[a], true, m, ranks);
+        }
+        for (int x = meet; x != rt; ) {
+            int a = q.backwardArc[x];
+            unpack(arcTail[a], x, false, m, ranks);
+            x = arcTail[a];
+        }
+
+        int[] path = new int[ranks.size];
+        for (int i = 0; i < path.length; i++) path[i] = order[ranks.data[i]];
+        return path;
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    private Metric currentMetric() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) customize();
+            }
+        }
+        return metric;
+    }
+
+    /** Arc id of lo -> hi, found by binary search in lo's sorted upward list. */
+    private int arc(int lo, int hi) {
+        int i = Arrays.binarySearch(upHead, upOffsets[lo], upOffsets[lo + 1], hi);
+        if (i < 0) throw new IllegalStateException("No arc " + lo + " -> " + hi);
+        return i;
+    }
+
+    /**
+     * Appends the original-graph ranks of a traversed arc, excluding its start.
+     * {@code upward} walks lo -> hi, otherwise hi -> lo.
+     */
+    private void unpack(int lo, int hi, boolean upward, Metric m, IntList out) {
+        int a   = arc(lo, hi);
+        int mid = upward ? m.upMid[a] : m.downMid[a];
+        if (mid == NONE) {
+            out.add(upward ? hi : lo);
+        } else if (upward) {                 // lo -> mid -> hi
+            unpack(mid, lo, false, m, out);
+            unpack(mid, hi, true, m, out);
+        } else {                             // hi -> mid -> lo
+            unpack(mid, hi, false, m, out);
+            unpack(mid, lo, true, m, out);
+        }
+    }
+
+    /** Sorted union of {@code a} and {@code b} without {@code skip}. */
+    private static int[] union(int[] a, int[] b, int skip) {
+        int[] out = new int[a.length + b.length];
+        int   i = 0, j = 0, c = 0;
+        while (i < a.length || j < b.length) {
+            int v;
+            if (j == b.length || (i < a.length && a[i] < b[j])) v = a[i++];
+            else if (i == a.length || b[j] < a[i])              v = b[j++];
+            else { v = a[i++]; j++; }
+            if (v != skip) out[c++] = v;
+        }
+        return c == out.length ? out : Arrays.copyOf(out, c);
+    }
+
+    private static int[][] undirectedAdjacency(CompiledGraph graph) {
+        int n = graph.nodeCount();
+        int[] degree = new int[n];
+        for (int u = 0; u < n; u++)
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                if (u == v) continue;
+                degree[u]++;
+                degree[v]++;
+            }
+        int[][] adj = new int[n][];
+        for (int v = 0; v < n; v++) adj[v] = new int[degree[v]];
+        Arrays.fill(degree, 0);
+        for (int u = 0; u < n; u++)
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                if (u == v) continue;
+                adj[u][degree[u]++] = v;
+                adj[v][degree[v]++] = u;
+            }
+        for (int v = 0; v < n; v++) {
+            int[] a = adj[v];
+            Arrays.sort(a);
+            int c = 0;
+            for (int i = 0; i < a.length; i++) if (i == 0 || a[i] != a[i - 1]) a[c++] = a[i];
+            adj[v] = c == a.length ? a : Arrays.copyOf(a, c);
+        }
+        return adj;
+    }
+
+    /**
+     * Nested dissection: each connected cell is split either between floors,
+     * where only the stairwell and lift ends form the separator, or by a BFS
+     * level set taken from a pseudo-peripheral node, whichever separator is
+     * smaller. Separator nodes get the highest remaining ranks, then both
+     * halves are ordered recursively.
+     *
+     * @return rank -> node id
+     */
+    private static int[] nestedDissectionOrder(int[][] adj, int[] floors) {
+        int n = adj.length;
+        int[] order = new int[n];
+        int   next  = n - 1;
+
+        int[] member = new int[n];      // stamp: node belongs to the cell being split
+        int[] seen   = new int[n];      // stamp: node visited by the current BFS
+        int[] level  = new int[n];
+        int[] queue  = new int[n];
+        int   cellStamp = 0, bfsStamp = 0;
+
+        Deque<int[]> cells = new ArrayDeque<>();
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) all[v] = v;
+        if (n > 0) cells.push(all);
+
+        while (!cells.isEmpty()) {
+            int[] cell = cells.pop();
+            if (cell.length <= LEAF_SIZE) {
+                for (int v : cell) order[next--] = v;
+                continue;
+            }
+            cellStamp++;
+            for (int v : cell) member[v] = cellStamp;
+
+            // First BFS: find the component of cell[0] and a far node in it
+            int count = bfs(cell[0], adj, member, cellStamp, seen, ++bfsStamp, level, queue);
+            if (count < cell.length) {
+                int[] component = Arrays.copyOf(queue, count);
+                int[] rest      = new int[cell.length - count];
+                int   c = 0;
+                for (int v : cell) if (seen[v] != bfsStamp) rest[c++] = v;
+                cells.push(rest);
+                cells.push(component);
+                continue;
+            }
+
+            // Second BFS from the far end gives a long, thin level structure
+            count = bfs(queue[count - 1], adj, member, cellStamp, seen, ++bfsStamp, level, queue);
+            int depth = level[queue[count - 1]];
+            if (depth < 2) {
+                for (int v : cell) order[next--] = v;
+                continue;
+            }
+
+            // Separator: the smallest interior level that leaves at least a third of the cell on each side
+            int[] perLevel = new int[depth + 1];
+            for (int i = 0; i < count; i++) perLevel[level[queue[i]]]++;
+            int split = -1, reached = perLevel[0];
+            for (int l = 1; l < depth; l++) {
+                boolean balanced = reached >= count / 3 && count - reached - perLevel[l] >= count / 3;
+                if (balanced && (split < 0 || perLevel[l] < perLevel[split])) split = l;
+                reached += perLevel[l];
+            }
+            if (split < 0) {
+                // No balanced level: fall back to the one containing the median node
+                split  = 1;
+                reached = perLevel[0];
+                while (split < depth - 1 && reached + perLevel[split] < count / 2) reached += perLevel[split++];
+            }
+
+            // Building floors are usually joined by a handful of bridges, which makes a far smaller cut
+            int floorSplit = balancedFloorSplit(cell, floors);
+            if (floorSplit != Integer.MIN_VALUE
+                    && floorSeparatorSize(cell, adj, member, cellStamp, floors, floorSplit) <= perLevel[split]) {
+                int[] low  = new int[count];
+                int[] high = new int[count];
+                int   nl = 0, nh = 0;
+                for (int v : cell) {
+                    if (floors[v] >= floorSplit)                                     high[nh++] = v;
+                    else if (crossesUp(v, adj, member, cellStamp, floors, floorSplit)) order[next--] = v;
+                    else                                                             low[nl++]  = v;
+                }
+                cells.push(Arrays.copyOf(high, nh));
+                cells.push(Arrays.copyOf(low, nl));
+                continue;
+            }
+
+            int[] low  = new int[count];
+            int[] high = new int[count];
+            int   nl = 0, nh = 0;
+            for (int i = 0; i < count; i++) {
+                int v = queue[i];
+                if      (level[v] == split) order[next--] = v;
+                else if (level[v] <  split) low[nl++]  = v;
+                else                        high[nh++] = v;
+            }
+            cells.push(Arrays.copyOf(high, nh));
+            cells.push(Arrays.copyOf(low, nl));
+        }
+        return order;
+    }
+
+    /**
+     * The floor f that best balances "below f" against "f and above" within the cell,
+     * or MIN_VALUE if the cell lies on a single floor.
+     */
+    private static int balancedFloorSplit(int[] cell, int[] floors) {
+        TreeMap<Integer, Integer> perFloor = new TreeMap<>();
+        for (int v : cell) perFloor.merge(floors[v], 1, Integer::sum);
+        if (perFloor.size() < 2) return Integer.MIN_VALUE;
+
+        int best = Integer.MIN_VALUE, bestImbalance = Integer.MAX_VALUE, below = 0;
+        for (Map.Entry<Integer, Integer> e : perFloor.entrySet()) {
+            if (below > 0) {
+                int imbalance = Math.abs(cell.length - 2 * below);
+                if (imbalance < bestImbalance) { bestImbalance = imbalance; best = e.getKey(); }
+            }
+            below += e.getValue();
+        }
+        return best;
+    }
+
+    private static int floorSeparatorSize(int[] cell, int[][] adj, int[] member, int cellStamp,
+                                          int[] floors, int split) {
+        int size = 0;
+        for (int v : cell)
+            if (floors[v] < split && crossesUp(v, adj, member, cellStamp, floors, split)) size++;
+        return size;
+    }
+
+    /** True if v lies below the split floor and has a neighbour in the cell at or above it. */
+    private static boolean crossesUp(int v, int[][] adj, int[] member, int cellStamp,
+                                     int[] floors, int split) {
+        if (floors[v] >= split) return false;
+        for (int u : adj[v]) if (member[u] == cellStamp && floors[u] >= split) return true;
+        return false;
+    }
+
+    /** BFS within one cell. Fills queue[0 .. count) in visiting order and level[] per node. */
+    private static int bfs(int root, int[][] adj, int[] member, int cellStamp,
+                           int[] seen, int bfsStamp, int[] level, int[] queue) {
+        int head = 0, tail = 0;
+        queue[tail++] = root;
+        seen[root]  = bfsStamp;
+        level[root] = 0;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int v : adj[u]) {
+                if (member[v] != cellStamp || seen[v] == bfsStamp) continue;
+                seen[v]  = bfsStamp;
+                level[v] = level[u] + 1;
+                queue[tail++] = v;
+            }
+        }
+        return tail;
+    }
+
+    /** Minimal growable int list for path unpacking. */
+    private static final class IntList {
+        int[] data = new int[16];
+        int   size;
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+}
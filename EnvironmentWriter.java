@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * Single writer of a building's environmental state, publishing consistent
+ * {@link PassabilitySnapshot}s for lock-free readers.
+ *
+ * <p>Sensor updates are applied to the nodes as they arrive, but searches
+ * only see them once {@link #publish()} is called: it derives which nodes
+ * flipped, builds the next snapshot copy-on-write and publishes it with one
+ * volatile write. Readers take {@link #current()} and search on
+ * {@code graph.at(snapshot)}, so any number of threads query one consistent
+ * state while the writer prepares the next.
+ *
+ * <pre>
+ *   writer.setTemperature(node, 75f);
+ *   writer.setGasConcentration(other, 0.6f);
+ *   writer.publish();                               // both changes become visible together
+ *
+ *   CompiledGraph view = graph.at(writer.current()); // any reader thread
+ *   view.findKShortestPathsToExits(source, 3);
+ * </pre>
+ *
+ * <p>All updates must come from one thread, the first one to write; others
+ * get an {@link IllegalStateException}. The writer manages the graph's nodes
+ * from construction until {@link #release()}: meanwhile their own setters
+ * throw, so every change goes through this writer and no published snapshot
+ * can fall behind the nodes unnoticed.
+ *
+ * <p>{@link PublishListener}s run on the writer thread with each new version
+ * just before it becomes current, so state derived from a version, such as
+ * an exit distance field, is ready by the time readers can see it.
+ */
+public final class EnvironmentWriter {
+
+    private final CompiledGraph graph;
+    private volatile PassabilitySnapshot current;
+
+    // Nodes touched since the last publication, de-duplicated by stamp
+    private final int[] touched;
+    private final int[] stamp;
+    private int         touchedCount;
+    private int         generation = 1;
+
+    private volatile Thread  owner;
+    private volatile boolean released;
+
+    private static final PublishListener[] NO_LISTENERS = new PublishListener[0];
+    private volatile PublishListener[] listeners = NO_LISTENERS;
+
+    /** Callback for each new version, run on the writer thread before the version is published. */
+    public interface PublishListener {
+        void published(PassabilitySnapshot snapshot);
+    }
+
+    /**
+     * Takes over the graph's nodes and captures their current state as version 0.
+     *
+     * @throws IllegalStateException if another writer still manages one of the nodes
+     */
+    public EnvironmentWriter(CompiledGraph graph) {
+        this.graph = graph;
+        int claimed = 0;
+        try {
+            for (; claimed < graph.nodeCount(); claimed++) graph.nodes[claimed].claim(this);
+        } catch (IllegalStateException e) {
+            for (int v = 0; v < claimed; v++) graph.nodes[v].release(this);
+            throw e;
+        }
+        this.current = PassabilitySnapshot.capture(graph);
+        this.touched = new int[graph.nodeCount()];
+        this.stamp   = new int[graph.nodeCount()];
+    }
+
+    /** The latest published snapshot. Safe to call from any thread. */
+    public PassabilitySnapshot current() { return current; }
+
+    /** A view of the graph pinned to the latest published snapshot. Safe to call from any thread. */
+    public CompiledGraph view() { return graph.at(current); }
+
+    /** Registers a listener to be called with every version published from now on. */
+    public synchronized void addPublishListener(PublishListener listener) {
+        if (listener == null) throw new IllegalArgumentException("listener must not be null");
+        PublishListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /** Removes a previously registered listener. Does nothing if it is not registered. */
+    public synchronized void removePublishListener(PublishListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            PublishListener[] shrunk = new PublishListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, shrunk, 0, i);
+            System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+            listeners = shrunk.length == 0 ? NO_LISTENERS : shrunk;
+            return;
+        }
+    }
+
+    // -------------------------
+    //  Updates (writer thread only)
+    // -------------------------
+
+    public void setTemperature(Node node, float temperature) {
+        touch(node).writeTemperature(temperature);
+    }
+
+    public void setGasConcentration(Node node, float gasConcentration) {
+        touch(node).writeGasConcentration(gasConcentration);
+    }
+
+    public void setTemperatureThreshold(Node node, float threshold) {
+        touch(node).writeTemperatureThreshold(threshold);
+    }
+
+    public void setGasConcentrationThreshold(Node node, float threshold) {
+        touch(node).writeGasConcentrationThreshold(threshold);
+    }
+
+    public void setPassable(Node node, boolean passable) {
+        touch(node).writeOverride(passable);
+    }
+
+    public void clearPassableOverride(Node node) {
+        touch(node).writeOverride(null);
+    }
+
+    /**
+     * Publishes every update since the last publication as one new version.
+     * If no touched node changed passability, the current snapshot is kept.
+     *
+     * @return the snapshot now current
+     */
+    public PassabilitySnapshot publish() {
+        checkOwner();
+        PassabilitySnapshot base    = current;
+        int                 flipped = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int v = touched[i];
+            if (graph.nodes[v].isPassable() != base.passable(v)) touched[flipped++] = v;
+        }
+        clearTouched();
+        if (flipped == 0) return base;
+        return current = announce(base.flip(touched, flipped));
+    }
+
+    /** Re-reads every node and publishes the result as one new version. */
+    public PassabilitySnapshot republishAll() {
+        checkOwner();
+        clearTouched();
+        return current = announce(PassabilitySnapshot.capture(graph, current.version() + 1));
+    }
+
+    /**
+     * Hands the nodes back, so their own setters work again, and refuses any
+     * further update. Published snapshots stay valid. May be called from any thread.
+     */
+    public void release() {
+        released = true;
+        for (Node node : graph.nodes) node.release(this);
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    private Node touch(Node node) {
+        checkOwner();
+        int v = graph.require(node);
+        if (stamp[v] != generation) {
+            stamp[v] = generation;
+            touched[touchedCount++] = v;
+        }
+        return node;
+    }
+
+    // Lets the listeners catch up with a version before readers can see it
+    private PassabilitySnapshot announce(PassabilitySnapshot next) {
+        for (PublishListener l : listeners) l.published(next);
+        return next;
+    }
+
+    private void clearTouched() {
+        touchedCount = 0;
+        if (++generation == 0) {            // wrapped around: stale stamps could collide
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+    }
+
+    private void checkOwner() {
+        if (released) throw new IllegalStateException("EnvironmentWriter has been released");
+        Thread me = Thread.currentThread();
+        if (owner == null) {
+            synchronized (this) { if (owner == null) owner = me; }
+        }
+        if (owner != me)
+            throw new IllegalStateException("EnvironmentWriter is confined to thread " + owner.getName());
+    }
+}
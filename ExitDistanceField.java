@@ -0,0 +1,335 @@
+import java.util.*;
+
+/**
+ * Distance from every node of a {@link CompiledGraph} to its nearest passable Exit.
+ *
+ * <p>Computed by one reverse multi-source Dijkstra seeded from every passable
+ * Exit, instead of one forward search per source as in
+ * {@link Node#findNearestExit()}. The result is a shortest-path forest rooted
+ * at the exits: for each node it stores the distance, the next hop towards
+ * the exit and the exit itself, so "where do I go from here" is an O(1)
+ * lookup.
+ *
+ * <p>Passability follows {@link Node#findNearestExit()}: the path may only
+ * pass through passable nodes and must end at a passable Exit, while the
+ * starting node itself is exempt. An impassable node therefore still gets a
+ * distance of its own but never relays one to its predecessors.
+ *
+ * <p>After {@link #attach()}, passability changes are repaired incrementally
+ * in the style of Ramalingam and Reps: only the subtree of the forest behind
+ * the changed node is invalidated and re-settled, and improvements spread
+ * outwards from nodes that became passable. Untouched regions of the
+ * building cost nothing.
+ *
+ * <p>A field computed over a view {@code graph.at(snapshot)} follows published
+ * versions instead: {@link #advanceTo(PassabilitySnapshot)} repairs it node by
+ * node from the snapshot it was computed on to a newer one, so it always
+ * matches exactly one published building state. {@link #freeze()} copies
+ * the labels of one such state for readers on other threads.
+ */
+public final class ExitDistanceField implements Node.PassabilityListener {
+
+    private static final int NONE = -1;
+
+    private CompiledGraph graph;   // replaced by a view at each newer version in advanceTo()
+
+    // Per-node results, indexed by snapshot node id
+    final float[] dist;      // distance to nearest exit, MAX_VALUE if none
+    final int[]   next;      // next hop towards that exit, NONE at an exit or if unreachable
+    final int[]   exitOf;    // the exit reached, NONE if unreachable
+
+    private final IndexedHeap heap;
+
+    // Scratch space for repairs: BFS queue over the invalidated subtree and its generation-stamped membership
+    private final int[] stack;
+    private final int[] affected;
+    private int         generation;
+
+    // Ids whose passability differs between two versions, for advanceTo()
+    private final int[] flipped;
+
+    // Passability the labels currently reflect when following snapshots, flipped
+    // node by node in advanceTo(); null when reading the live nodes
+    private final boolean[] open;
+
+    /** Computes the field for the current passability state of the graph. */
+    public ExitDistanceField(CompiledGraph graph) {
+        int n = graph.nodeCount();
+        this.graph  = graph;
+        this.dist   = new float[n];
+        this.next   = new int[n];
+        this.exitOf = new int[n];
+        this.heap   = new IndexedHeap(n);
+        this.stack  = new int[n];
+        this.affected = new int[n];
+        this.flipped  = new int[n];
+        this.open     = graph.environment() == null ? null : new boolean[n];
+        if (open != null) for (int v = 0; v < n; v++) open[v] = graph.passable(v);
+        recompute();
+    }
+
+    // Frozen copy: the labels only, no scratch space for repairs
+    private ExitDistanceField(ExitDistanceField source) {
+        this.graph    = source.graph;
+        this.dist     = source.dist.clone();
+        this.next     = source.next.clone();
+        this.exitOf   = source.exitOf.clone();
+        this.heap     = null;
+        this.stack    = null;
+        this.affected = null;
+        this.flipped  = null;
+        this.open     = null;
+    }
+
+    /**
+     * An immutable copy of the current labels. Its lookups are safe from any
+     * thread without locking; it cannot be attached, repaired or advanced.
+     */
+    public ExitDistanceField freeze() {
+        return new ExitDistanceField(this);
+    }
+
+    /** Starts repairing the field automatically whenever a node's passability changes. */
+    public void attach() {
+        checkMutable();
+        for (Node node : graph.nodes) node.addPassabilityListener(this);
+    }
+
+    /** Stops automatic repair. */
+    public void detach() {
+        for (Node node : graph.nodes) node.removePassabilityListener(this);
+    }
+
+    @Override
+    public void passabilityChanged(Node node, boolean passable) {
+        int v = graph.indexOf(node);
+        if (v >= 0) repair(v);
+    }
+
+    /** Rebuilds the whole field from scratch. */
+    public void recompute() {
+        checkMutable();
+        Arrays.fill(dist, Float.MAX_VALUE);
+        Arrays.fill(next, NONE);
+        Arrays.fill(exitOf, NONE);
+        heap.clear();
+
+        for (int v = 0; v < dist.length; v++)
+            if (graph.exit[v] && passable(v)) {
+                dist[v]   = 0f;
+                exitOf[v] = v;
+                heap.offer(v, 0f);
+            }
+        propagate();
+    }
+
+    /**
+     * Brings a field computed over a snapshot view up to {@code next}, one
+     * changed node at a time; recomputes it instead when many nodes changed.
+     * Versions older than the field's own are ignored.
+     *
+     * @throws IllegalStateException if the field was not computed over a snapshot view, or is frozen
+     */
+    public void advanceTo(PassabilitySnapshot next) {
+        checkMutable();
+        PassabilitySnapshot at = graph.environment();
+        if (at == null) throw new IllegalStateException("Field is not computed over a snapshot view");
+        if (next.version() <= at.version()) return;
+
+        int count = at.diff(next, flipped);
+        graph = graph.at(next);
+        if (count > dist.length / 16) {
+            for (int i = 0; i < count; i++) open[flipped[i]] = !open[flipped[i]];
+            recompute();
+            return;
+        }
+        // Each repair needs the rest of the field consistent, so apply the flips one by one
+        for (int i = 0; i < count; i++) {
+            int v = flipped[i];
+            open[v] = !open[v];
+            repair(v);
+        }
+    }
+
+    // -------------------------
+    //  Lookups
+    // -------------------------
+
+    /** Distance from the node to its nearest passable exit, or MAX_VALUE if none is reachable. */
+    public float distanceToExit(Node node) {
+        return dist[graph.require(node)];
+    }
+
+    /** The nearest passable exit from the node, or empty if none is reachable. */
+    public Optional<Exit> nearestExit(Node node) {
+        int e = exitOf[graph.require(node)];
+        return e == NONE ? Optional.empty() : Optional.of((Exit) graph.nodes[e]);
+    }
+
+    /**
+     * The neighbour to move to next on the way to the nearest exit.
+     * Empty when the node is itself a passable exit or no exit is reachable.
+     */
+    public Optional<Node> nextHop(Node node) {
+        int h = next[graph.require(node)];
+        return h == NONE ? Optional.empty() : Optional.of(graph.nodes[h]);
+    }
+
+    /** The full route to the nearest exit, or empty if none is reachable. */
+    public Optional<List<Node>> pathToExit(Node node) {
+        int v = graph.require(node);
+        if (exitOf[v] == NONE) return Optional.empty();
+        List<Node> path = new ArrayList<>();
+        for (int at = v; at != NONE; at = next[at]) path.add(graph.nodes[at]);
+        return Optional.of(path);
+    }
+
+    /** The route to the nearest exit together with its distance, or empty if none is reachable. */
+    public Optional<PathCandidate> routeToExit(Node node) {
+        int v = graph.require(node);
+        if (exitOf[v] == NONE) return Optional.empty();
+        int length = 1;
+        for (int at = v; next[at] != NONE; at = next[at]) length++;
+        int[] path = new int[length];
+        for (int i = 0, at = v; at != NONE; at = next[at]) path[i++] = at;
+        return Optional.of(new PathCandidate(dist[v], path, graph.nodes));
+    }
+
+    // -------------------------
+    //  Incremental repair
+    // -------------------------
+
+    /**
+     * Brings the field up to date after the passability of node {@code v} changed.
+     * The rest of the field must be consistent with the current state.
+     *
+     * @return the number of nodes whose labels were recomputed
+     */
+    public int repair(Node node) {
+        checkMutable();
+        return repair(graph.require(node));
+    }
+
+    int repair(int v) {
+        boolean passable = passable(v);
+
+        if (passable) {
+            // Only decreases are possible: v may now be an exit seed or relay its distance.
+            if (graph.exit[v]) {
+                dist[v]   = 0f;
+                next[v]   = NONE;
+                exitOf[v] = v;
+            }
+            if (dist[v] == Float.MAX_VALUE) return 0;
+            heap.offer(v, dist[v]);
+            return propagate();
+        }
+
+        // v stopped relaying: everything routed through v must be re-settled.
+        // An exit additionally loses its own zero distance.
+        if (++generation == 0) {
+            Arrays.fill(affected, 0);
+            generation = 1;
+        }
+        int count = collectSubtree(v, graph.exit[v] && exitOf[v] == v);
+
+        // Reseed each affected node from unaffected successors, then re-run Dijkstra inside the region.
+        for (int i = 0; i < count; i++) {
+            int u = stack[i];
+            dist[u]   = Float.MAX_VALUE;
+            next[u]   = NONE;
+            exitOf[u] = NONE;
+        }
+        for (int i = 0; i < count; i++) {
+            int u = stack[i];
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int w = graph.targets[e];
+                if (affected[w] == generation || !passable(w)) continue;
+                if (dist[w] == Float.MAX_VALUE) continue;
+                float nd = dist[w] + graph.weights[e];
+                if (nd < dist[u]) {
+                    dist[u]   = nd;
+                    next[u]   = w;
+                    exitOf[u] = exitOf[w];
+                }
+            }
+            if (dist[u] < Float.MAX_VALUE) heap.offer(u, dist[u]);
+        }
+        return count + propagate();
+    }
+
+    /**
+     * Collects the nodes whose forest path runs through {@code root} into
+     * {@code stack[0 .. count)} and stamps them as affected.
+     */
+    private int collectSubtree(int root, boolean includeRoot) {
+        int count = 0;
+        if (includeRoot) {
+            affected[root] = generation;
+            stack[count++] = root;
+        }
+        count = collectChildren(root, count);
+        // stack doubles as the BFS queue: entries [i, count) are still to be expanded
+        for (int i = includeRoot ? 1 : 0; i < count; i++) count = collectChildren(stack[i], count);
+        return count;
+    }
+
+    /** Appends the forest children of {@code x} (predecessors whose next hop is x) to the queue. */
+    private int collectChildren(int x, int count) {
+        int[] rOff = graph.reverseOffsets;
+        int[] rSrc = graph.reverseSources;
+        for (int r = rOff[x]; r < rOff[x + 1]; r++) {
+            int p = rSrc[r];
+            if (next[p] == x && affected[p] != generation) {
+                affected[p] = generation;
+                stack[count++] = p;
+            }
+        }
+        return count;
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    private void checkMutable() {
+        if (heap == null) throw new IllegalStateException("Field is a frozen copy");
+    }
+
+    // The overlay when following snapshots, so advanceTo() needs no intermediate snapshot or view
+    private boolean passable(int v) {
+        return open != null ? open[v] : graph.passable(v);
+    }
+
+    /**
+     * Runs Dijkstra over reverse edges from whatever is in the heap.
+     * Only passable nodes relay their distance to predecessors.
+     *
+     * @return the number of nodes settled
+     */
+    private int propagate() {
+        int[]   rOff = graph.reverseOffsets;
+        int[]   rSrc = graph.reverseSources;
+        float[] rW   = graph.reverseWeights;
+
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (!passable(u)) continue;
+
+            float du = dist[u];
+            for (int r = rOff[u]; r < rOff[u + 1]; r++) {
+                int   p  = rSrc[r];
+                float nd = du + rW[r];
+                if (nd < dist[p]) {
+                    dist[p]   = nd;
+                    next[p]   = u;
+                    exitOf[p] = exitOf[u];
+                    heap.offer(p, nd);
+                }
+            }
+        }
+        return settled;
+    }
+}
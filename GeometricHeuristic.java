@@ -0,0 +1,69 @@
+/**
+ * Floor-aware geometric A* heuristic for a {@link CompiledGraph}.
+ *
+ * <p>The bound for node {@code v} and target {@code t} is
+ * <pre>
+ *   planarScale * |xy(v) - xy(t)|  +  floorCost * |floor(v) - floor(t)|
+ * </pre>
+ * {@code floorCost} is the smallest weight per floor crossed among the
+ * inter-floor edges, and {@code planarScale} the smallest weight per unit of
+ * length left on any edge once its floor cost is paid. Both are derived from
+ * the snapshot itself, so the bound never overestimates and is consistent
+ * regardless of the coordinate unit. If any node had no coordinates when the
+ * snapshot was compiled, only the floor term is used.
+ */
+final class GeometricHeuristic implements CompiledGraph.Heuristic {
+
+    // Shaves float rounding off the scale factors so the bound stays admissible
+    private static final float SAFETY = 0.9999f;
+
+    private final CompiledGraph graph;
+    final float planarScale;
+    final float floorCost;
+
+    GeometricHeuristic(CompiledGraph graph) {
+        this.graph = graph;
+
+        // The snapshot's copies, not the live nodes: coordinates set after compiling are NaN here
+        boolean planar = true;
+        for (int v = 0; v < graph.nodeCount() && planar; v++)
+            planar = !Float.isNaN(graph.xs[v]) && !Float.isNaN(graph.ys[v]);
+
+        float minFloorCost = Float.MAX_VALUE;
+        for (int u = 0; u < graph.nodeCount(); u++)
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int floorsCrossed = Math.abs(graph.floors[u] - graph.floors[graph.targets[e]]);
+                if (floorsCrossed > 0)
+                    minFloorCost = Math.min(minFloorCost, graph.weights[e] / floorsCrossed);
+            }
+        float fc = minFloorCost == Float.MAX_VALUE ? 0f : minFloorCost;
+
+        float minScale = Float.MAX_VALUE;
+        if (planar) {
+            for (int u = 0; u < graph.nodeCount(); u++)
+                for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                    int   v   = graph.targets[e];
+                    float len = planarDistance(u, v);
+                    if (len <= 0f) continue;
+                    float rest = graph.weights[e] - fc * Math.abs(graph.floors[u] - graph.floors[v]);
+                    minScale = Math.min(minScale, Math.max(rest, 0f) / len);
+                }
+        }
+
+        this.floorCost   = fc * SAFETY;
+        this.planarScale = minScale == Float.MAX_VALUE ? 0f : minScale * SAFETY;
+    }
+
+    @Override
+    public float lowerBound(int v, int target) {
+        float bound = floorCost * Math.abs(graph.floors[v] - graph.floors[target]);
+        if (planarScale > 0f) bound += planarScale * planarDistance(v, target);
+        return bound;
+    }
+
+    private float planarDistance(int a, int b) {
+        float dx = graph.xs[a] - graph.xs[b];
+        float dy = graph.ys[a] - graph.ys[b];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
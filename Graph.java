@@ -31,6 +31,22 @@ public class Graph {
         System.out.println("Graph validated successfully — " + nodes.size() + " nodes registered.");
     }
 
+    /**
+     * Compiles the current topology into an immutable CSR snapshot.
+     * Recompile after adding nodes or edges.
+     */
+    public CompiledGraph compile() {
+        return CompiledGraph.of(nodes.values());
+    }
+
+    /**
+     * Compiles with an explicit quantization step for the bucket queue used by
+     * plain Dijkstra searches; see {@link CompiledGraph#of(Collection, float)}.
+     */
+    public CompiledGraph compile(float quantum) {
+        return CompiledGraph.of(nodes.values(), quantum);
+    }
+
     /** Returns an unmodifiable view of all nodes in the graph. */
     public Collection<Node> getAllNodes() {
         return Collections.unmodifiableCollection(nodes.values());
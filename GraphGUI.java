@@ -3,8 +3,14 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.stream.Collectors;
 
 /**
@@ -16,9 +22,15 @@ import java.util.stream.Collectors;
  *   <li><b>Find Path</b> — click a node to highlight the 3 shortest paths to all passable exits.</li>
  * </ul>
  *
- * Compile together with Node.java, Exit.java, PathCandidate.java, Graph.java:
+ * Path searches run on a background thread so the UI stays responsive on
+ * large buildings; clicking another node cancels the search in progress.
+ *
+ * The canvas zooms with the mouse wheel and pans by dragging. Zoomed out,
+ * it drops detail in steps down to one block per floor.
+ *
+ * Compile together with the other sources in this directory:
  * <pre>
- *   javac Node.java PathCandidate.java Exit.java Graph.java GraphGUI.java
+ *   javac *.java
  *   java  GraphGUI
  * </pre>
  */
@@ -44,28 +56,128 @@ public class GraphGUI extends JFrame {
         new Color(80,  220, 255),   // cyan
     };
 
-    private static final int NODE_R = 22;   // node circle radius
-    private static final int HIT_R  = NODE_R + 6; // click hit radius
+    private static final Color BRIDGE_COL    = new Color(180, 130, 255, 160); // purple tint for bridges
+    private static final Color BRIDGE_WEIGHT = BRIDGE_COL.brighter();
+    private static final Color FLOOR_PILL    = new Color(40, 45, 65, 200);
+    private static final Color WEIGHT_PILL   = new Color(22, 25, 38, 200);
+    private static final Color SEL_GLOW      = new Color(SEL_RING.getRed(), SEL_RING.getGreen(), SEL_RING.getBlue(), 60);
+    private static final Color SHADOW        = new Color(0, 0, 0, 80);
+    private static final Color CROSS_COL     = new Color(255, 80, 80, 180);
+
+    // Path overlays fade with rank: line alpha 1.0, 0.8, 0.6
+    private static final Color[] PATH_LINE_COLORS  = new Color[PATH_COLORS.length];
+    private static final Color[] PATH_BADGE_COLORS = new Color[PATH_COLORS.length];
+    static {
+        for (int i = 0; i < PATH_COLORS.length; i++) {
+            Color c = PATH_COLORS[i];
+            PATH_LINE_COLORS[i]  = new Color(c.getRed(), c.getGreen(), c.getBlue(), (int) (255 * (1f - i * 0.2f)));
+            PATH_BADGE_COLORS[i] = new Color(c.getRed(), c.getGreen(), c.getBlue(), 200);
+        }
+    }
+
+    // ── Fonts and strokes, shared by every frame ──────────────
+    private static final Font LABEL_FONT  = new Font("Courier New", Font.BOLD,  12);
+    private static final Font BADGE_FONT  = new Font("Courier New", Font.BOLD,  11);
+    private static final Font WEIGHT_FONT = new Font("Courier New", Font.PLAIN, 10);
+    private static final Font SUB_FONT    = new Font("Courier New", Font.PLAIN,  9);
+
+    private static final Stroke EDGE_STROKE    = new BasicStroke(1.8f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Stroke BRIDGE_STROKE  = new BasicStroke(1.8f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                                                                 1f, new float[]{6f, 4f}, 0f);
+    private static final Stroke SEL_STROKE     = new BasicStroke(2.5f);
+    private static final Stroke OUTLINE_STROKE = new BasicStroke(1.5f);
+    private static final Stroke THIN_STROKE    = new BasicStroke(1f);
+    private static final Stroke CROSS_STROKE   = new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    // PATH_STROKES[i]: width 5 + i; shorter routes get the wider strokes
+    private static final Stroke[] PATH_STROKES = new Stroke[PATH_COLORS.length];
+    static {
+        for (int i = 0; i < PATH_STROKES.length; i++)
+            PATH_STROKES[i] = new BasicStroke(5f + i, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    }
+
+    private static final int NODE_R     = 22;   // node circle radius
+    private static final int HIT_R      = NODE_R + 6; // click hit radius
+    private static final int SPRITE_PAD = 6;    // room around a node body for shadow and outline
+    private static final int CULL_PAD   = NODE_R + 40; // farthest a node's glow or sub-label reaches
+    private static final int GRID_CELL  = 64;   // spatial grid cell size in canvas pixels
+
+    // ── Zoom and level of detail ──────────────────────────────
+    private static final double MIN_ZOOM    = 0.002;
+    private static final double MAX_ZOOM    = 4.0;
+    private static final double ZOOM_STEP   = 1.15;  // per mouse wheel notch
+    private static final double ZOOM_FULL   = 0.7;   // below: no weight pills, sub-labels or gradients
+    private static final double ZOOM_LABELS = 0.45;  // below: no node ids either
+    private static final double ZOOM_BLOCKS = 0.2;   // below: each floor collapses to one block
+    private static final int    NODE_BUDGET = 5000;  // most nodes drawn one by one per frame
+    private static final int    MIN_HIT_PX  = 8;     // smallest click radius on screen
+    private static final int    DRAG_SLOP   = 4;     // pixels a press may move and still be a click
+    private static final double LAYER_BAND  = 1.5;   // zoom factor the static layer may be stretched by
+    private static final double LAYER_PAD   = 0.25;  // share of the viewport rendered past each side of it
+    private static final int    SETTLE_MS   = 200;   // pause after zooming before it is re-rendered sharp
 
     // ── Interaction mode ──────────────────────────────────────
     enum Mode { CHANGE_PASSABILITY, FIND_PATH }
     private Mode mode = Mode.CHANGE_PASSABILITY;
 
+    // Rendering tiers, chosen per frame from the zoom and the nodes in view
+    enum Detail { FULL, SIMPLE, BLOCKS }
+
     // ── Graph state ───────────────────────────────────────────
+    private final RoutingEngine       engine;
     private final List<Node>          nodeList   = new ArrayList<>();
     private final Map<Node, Point>    positions  = new LinkedHashMap<>();
+    private final Map<Node, Integer>  nodeIndex  = new HashMap<>();      // position in nodeList
     private final List<PathCandidate> foundPaths = new ArrayList<>();
     private Node selectedNode = null;
 
+    // ── Spatial index ─────────────────────────────────────────
+    // Node i of nodeList sits at (nodeX[i], nodeY[i]); edge j runs from
+    // edgeFrom[j] to edgeTo[j], two-way edges listed once. Both grids answer
+    // window queries, so clicks and painting only touch what is near.
+    private int[]       nodeX, nodeY;
+    private int[]       edgeFrom, edgeTo;
+    private float[]     edgeWeight;
+    private SpatialGrid nodeGrid, edgeGrid;
+    private Rectangle   worldBounds;        // all nodes and floor labels, for fitting the view
+
+    // ── Floors ────────────────────────────────────────────────
+    // Slot k is floor level floorLevel[k], whose nodes span floorBox[k].
+    // floorBlocked counts its impassable nodes and is kept current by a
+    // passability listener, so zoomed-out frames never scan the nodes.
+    private int[]              floorLevel, floorSize, nodeFloor;
+    private Rectangle[]        floorBox;
+    private boolean[]          floorHasExit;
+    private AtomicIntegerArray floorBlocked;
+
+    private final Node.PassabilityListener floorCounter = this::floorPassabilityChanged;
+
+    // ── Background search ─────────────────────────────────────
+    // One daemon worker; a newer FIND_PATH click interrupts the search it supersedes
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "path-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> pendingSearch;
+    private long      searchSeq;        // bumped per request on the EDT; stale results are dropped
+
     // ── Widgets ───────────────────────────────────────────────
     private final GraphCanvas canvas = new GraphCanvas();
-    private JTextArea infoArea;
-    private JLabel    statusLabel;
+    private JTextArea    infoArea;
+    private JLabel       statusLabel;
+    private JProgressBar searchProgress;
 
     // ─────────────────────────────────────────────────────────
     public GraphGUI() {
+        this(new RoutingEngine(SampleBuilding.build()));
+    }
+
+    /** Shows the engine's graph; nodes are placed at their coordinates. */
+    public GraphGUI(RoutingEngine engine) {
         super("Graph Visualizer");
-        buildSampleGraph();
+        this.engine = engine;
+        loadGraph();
         buildUI();
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setSize(1360, 780);
@@ -73,96 +185,91 @@ public class GraphGUI extends JFrame {
         setVisible(true);
     }
 
-    // ── Sample graph ──────────────────────────────────────────
-    // Four floors (0-3), each a 6-node ring with random edge weights 1-2.
-    // Adjacent floors are connected at two bridging nodes (distance 2).
-    // Floor 0 has three Exit nodes.
-    private void buildSampleGraph() {
-        //  4 floors, each a 2-col x 3-row rectangle, staggered vertically.
-        //
-        //  Node naming: floor digit + letter, left col top-to-bottom then right col:
-        //    Floor 0: 0A, 0B, 0C (left), 0D, 0E, 0F (right)
-        //    Floor 1: 1A, 1B, 1C (left), 1D, 1E, 1F (right)
-        //    ...
-        //
-        //  Ring per floor (clockwise):
-        //    0A - 0D  (top edge)
-        //    0D - 0E  (right col down)
-        //    0E - 0F  (right col down)
-        //    0F - 0C  (bottom edge)
-        //    0C - 0B  (left col up)
-        //    0B - 0A  (left col up)
-        //
-        //  Inter-floor bridges at top row and bottom row.
-        //  Exits on floor 0, bottom row (0C = West Exit, 0F = East Exit).
-        //
-        //  Canvas layout: floors side by side horizontally,
-        //  each shifted downward by `stagger` pixels relative to the previous.
-
-        final int FLOORS  = 4;
-        final int colGap  = 160;  // horizontal distance between left and right column
-        final int rowGap  = 110;  // vertical distance between rows within a floor
-        final int floorW  = 230;  // horizontal distance between floor blocks
-        final int stagger =  40;  // each floor is shifted down by this amount
-        final int originX =  80;  // x of left column of floor 0
-        final int originY =  80;  // y of top row of floor 0
-
-        // n[floor][col][row]: col 0=left, 1=right; row 0=top, 1=mid, 2=bottom
-        Node[][][] n = new Node[FLOORS][2][3];
-
-        // Letter sequence for naming: left col = A,B,C  right col = D,E,F
-        char[] leftLetters  = {'A', 'B', 'C'};
-        char[] rightLetters = {'D', 'E', 'F'};
-
-        for (int fl = 0; fl < FLOORS; fl++) {
-            int lx = originX + fl * floorW;
-            int rx = lx + colGap;
-            int yBase = originY + fl * stagger;  // stagger each floor downward
-
-            for (int row = 0; row < 3; row++) {
-                int    y   = yBase + row * rowGap;
-                float  t   = 20f + row * 4f;
-                float  g   = 0.01f + row * 0.01f;
-                String lid = fl + "" + leftLetters[row];
-                String rid = fl + "" + rightLetters[row];
-
-                if (fl == 0 && row == 2) {
-                    // Ground floor bottom row → exits
-                    n[fl][0][row] = new Exit(lid, "West Exit", fl, true,  t, g);
-                    n[fl][1][row] = new Exit(rid, "East Exit", fl, false, 78f, 0.85f); // blocked
-                } else {
-                    // Make one node impassable to demonstrate the feature
-                    boolean hot = (fl == 2 && row == 1);
-                    n[fl][0][row] = new Node(lid, fl, hot ? 82f : t, hot ? 0.75f : g);
-                    n[fl][1][row] = new Node(rid, fl, t, g);
-                }
+    // ── Graph ─────────────────────────────────────────────────
+    // Nodes come from the engine's graph; their coordinates are canvas positions.
+    private void loadGraph() {
+        for (Node n : engine.getGraph().getAllNodes()) {
+            nodeIndex.put(n, nodeList.size());
+            nodeList.add(n);
+            positions.put(n, new Point(Math.round(n.getX()), Math.round(n.getY())));
+        }
+        indexGraph();
+    }
 
-                nodeList.add(n[fl][0][row]);
-                nodeList.add(n[fl][1][row]);
-                positions.put(n[fl][0][row], new Point(lx, y));
-                positions.put(n[fl][1][row], new Point(rx, y));
+    // Flattens positions and edges into arrays and builds the spatial grids over them.
+    private void indexGraph() {
+        int n = nodeList.size();
+        nodeX = new int[n];
+        nodeY = new int[n];
+        for (int i = 0; i < n; i++) {
+            Point p = positions.get(nodeList.get(i));
+            nodeX[i] = p.x;
+            nodeY[i] = p.y;
+        }
+        nodeGrid = SpatialGrid.ofPoints(nodeX, nodeY, GRID_CELL);
+
+        int m = 0;
+        for (Node a : nodeList) m += a.getNeighbors().size();
+        edgeFrom   = new int[m];
+        edgeTo     = new int[m];
+        edgeWeight = new float[m];
+        m = 0;
+        for (int i = 0; i < n; i++) {
+            Node a = nodeList.get(i);
+            for (Map.Entry<Node, Float> e : a.getNeighbors().entrySet()) {
+                Node b = e.getKey();
+                int  j = nodeIndex.get(b);
+                // A two-way edge is kept once, from its lower-indexed end
+                if (b.getNeighbors().containsKey(a) && j < i) continue;
+                edgeFrom[m]   = i;
+                edgeTo[m]     = j;
+                edgeWeight[m] = e.getValue();
+                m++;
             }
         }
+        edgeFrom   = Arrays.copyOf(edgeFrom, m);
+        edgeTo     = Arrays.copyOf(edgeTo, m);
+        edgeWeight = Arrays.copyOf(edgeWeight, m);
 
-        // ── Per-floor ring edges (clockwise) ──────────────────────
-        for (int fl = 0; fl < FLOORS; fl++) {
-            n[fl][0][0].addBidirectionalNeighbor(n[fl][1][0], 3f); // top edge
-            n[fl][1][0].addBidirectionalNeighbor(n[fl][1][1], 2f); // right col top -> mid
-            n[fl][1][1].addBidirectionalNeighbor(n[fl][1][2], 2f); // right col mid -> bot
-            n[fl][1][2].addBidirectionalNeighbor(n[fl][0][2], 3f); // bottom edge
-            n[fl][0][2].addBidirectionalNeighbor(n[fl][0][1], 2f); // left col bot -> mid
-            n[fl][0][1].addBidirectionalNeighbor(n[fl][0][0], 2f); // left col mid -> top
+        int[] x0 = new int[m], y0 = new int[m], x1 = new int[m], y1 = new int[m];
+        for (int j = 0; j < m; j++) {
+            int a = edgeFrom[j], b = edgeTo[j];
+            x0[j] = Math.min(nodeX[a], nodeX[b]); x1[j] = Math.max(nodeX[a], nodeX[b]);
+            y0[j] = Math.min(nodeY[a], nodeY[b]); y1[j] = Math.max(nodeY[a], nodeY[b]);
         }
+        edgeGrid = new SpatialGrid(x0, y0, x1, y1, GRID_CELL);
+
+        indexFloors();
+    }
 
-        // ── Inter-floor bridges ───────────────────────────────────
-        // Connect adjacent floors at top row (row 0) and bottom row (row 2),
-        // both left and right columns.
-        for (int fl = 0; fl < FLOORS - 1; fl++) {
-            n[fl][0][0].addBidirectionalNeighbor(n[fl+1][0][0], 4f); // left  top
-            n[fl][1][0].addBidirectionalNeighbor(n[fl+1][1][0], 4f); // right top
-            n[fl][0][2].addBidirectionalNeighbor(n[fl+1][0][2], 4f); // left  bottom
-            n[fl][1][2].addBidirectionalNeighbor(n[fl+1][1][2], 4f); // right bottom
+    // Floor slots, their bounds and impassable counts; labels are placed from the bounds.
+    private void indexFloors() {
+        int n = nodeList.size();
+        floorLevel = nodeList.stream().mapToInt(Node::getFloor).distinct().sorted().toArray();
+        int k = floorLevel.length;
+        floorSize    = new int[k];
+        nodeFloor    = new int[n];
+        floorBox     = new Rectangle[k];
+        floorHasExit = new boolean[k];
+        floorBlocked = new AtomicIntegerArray(k);
+        for (int i = 0; i < n; i++) {
+            Node node = nodeList.get(i);
+            int  f    = Arrays.binarySearch(floorLevel, node.getFloor());
+            nodeFloor[i] = f;
+            floorSize[f]++;
+            if (node instanceof Exit)  floorHasExit[f] = true;
+            if (!node.isPassable())    floorBlocked.incrementAndGet(f);
+            if (floorBox[f] == null)   floorBox[f] = new Rectangle(nodeX[i], nodeY[i], 0, 0);
+            else                       floorBox[f].add(nodeX[i], nodeY[i]);
         }
+        for (Node node : nodeList) node.addPassabilityListener(floorCounter);
+
+        // Nodes with their glow and sub-labels, plus the floor labels above
+        worldBounds = new Rectangle();
+        for (Rectangle b : floorBox) worldBounds = worldBounds.isEmpty() ? new Rectangle(b) : worldBounds.union(b);
+        worldBounds.grow(NODE_R + 20, NODE_R + 20);
+        worldBounds.y      -= 14;                   // floor label pills start 52 above a floor's top row
+        worldBounds.height += 14;
     }
 
     // ── UI layout ─────────────────────────────────────────────
@@ -201,17 +308,31 @@ public class GraphGUI extends JFrame {
 
         btnPass.addActionListener(e -> {
             mode = Mode.CHANGE_PASSABILITY;
+            cancelSearch();
             foundPaths.clear(); selectedNode = null;
             setStatus("Click a node to toggle its passability.");
             canvas.repaint(); updateInfoArea();
         });
         btnPath.addActionListener(e -> {
             mode = Mode.FIND_PATH;
+            cancelSearch();
             foundPaths.clear(); selectedNode = null;
             setStatus("Click a node to find the 3 shortest paths to all exits.");
             canvas.repaint(); updateInfoArea();
         });
 
+        JButton btnFit = new JButton("Fit View");
+        btnFit.setFont(new Font("Courier New", Font.BOLD, 12));
+        btnFit.setForeground(TEXT_DIM);
+        btnFit.setBackground(PANEL_BG);
+        btnFit.setBorder(new RoundedBorder(8, BORDER_COL));
+        btnFit.setFocusPainted(false);
+        btnFit.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        btnFit.setPreferredSize(new Dimension(110, 30));
+        btnFit.setToolTipText("Mouse wheel zooms, dragging pans");
+        btnFit.addActionListener(e -> canvas.fitView());
+        bar.add(btnFit);
+
         bar.add(Box.createHorizontalStrut(20));
         bar.add(legendDot(NODE_BLUE,  "Node"));
         bar.add(legendDot(NODE_GREEN, "Exit"));
@@ -332,7 +453,17 @@ public class GraphGUI extends JFrame {
         statusLabel = new JLabel("Click a node to toggle its passability.");
         statusLabel.setFont(new Font("Courier New", Font.PLAIN, 15));
         statusLabel.setForeground(TEXT_BRIGHT);
+
+        searchProgress = new JProgressBar();
+        searchProgress.setIndeterminate(true);
+        searchProgress.setPreferredSize(new Dimension(140, 12));
+        searchProgress.setForeground(ACCENT);
+        searchProgress.setBackground(BG);
+        searchProgress.setBorder(BorderFactory.createLineBorder(BORDER_COL));
+        searchProgress.setVisible(false);
+
         bar.add(statusLabel);
+        bar.add(searchProgress);
         return bar;
     }
 
@@ -342,186 +473,484 @@ public class GraphGUI extends JFrame {
     //  Canvas
     // ─────────────────────────────────────────────────────────
     class GraphCanvas extends JPanel {
+        // View transform: screen = world * zoom + pan
+        private double  zoom = 1;
+        private double  panX, panY;
+        private boolean viewPlaced;         // initial placement done once the canvas has a size
+
+        // Drag state: a press that moves more than DRAG_SLOP pans instead of clicking
+        private Point   pressPoint;
+        private boolean dragging;
+
+        // Static layer: floor labels, edges and weight pills for the viewport plus a
+        // margin, rendered at staticZoom with its top-left corner at world (staticX, staticY).
+        // Pans and zooms within LAYER_BAND blit it with the new transform; it is rebuilt
+        // when the view leaves it, the zoom leaves the band or the level of detail,
+        // compiled graph or display scale changes
+        private BufferedImage staticLayer;
+        private CompiledGraph staticGraph;
+        private double        staticScale, staticZoom, staticX, staticY;
+        private int           staticW, staticH;     // logical size of the layer
+        private Detail        staticDetail;
+        private final javax.swing.Timer settle = new javax.swing.Timer(SETTLE_MS, e -> invalidateStaticLayer());
+
+        // Node body sprites (shadow, gradient, outline, exit marker) by spriteIndex(),
+        // rendered at the device scale times the zoom so blits stay sharp
+        private final BufferedImage[] sprites = new BufferedImage[4];
+        private double                spriteScale;
+
         GraphCanvas() {
             setBackground(BG);
+            settle.setRepeats(false);
             setCursor(Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR));
-            addMouseListener(new MouseAdapter() {
-                @Override public void mousePressed(MouseEvent e) { handleClick(e.getPoint()); }
-            });
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override public void mousePressed(MouseEvent e) {
+                    pressPoint = e.getPoint();
+                    dragging   = false;
+                }
+                @Override public void mouseDragged(MouseEvent e) {
+                    if (pressPoint == null) return;
+                    if (!dragging && e.getPoint().distance(pressPoint) <= DRAG_SLOP) return;
+                    dragging = true;
+                    panX += e.getX() - pressPoint.x;
+                    panY += e.getY() - pressPoint.y;
+                    pressPoint = e.getPoint();
+                    repaint();
+                }
+                @Override public void mouseReleased(MouseEvent e) {
+                    if (pressPoint != null && !dragging) handleClick(e.getPoint());
+                    pressPoint = null;
+                }
+                @Override public void mouseMoved(MouseEvent e) { hover(e.getPoint()); }
+                @Override public void mouseWheelMoved(MouseWheelEvent e) {
+                    zoomAt(e.getPoint(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
+        }
+
+        // ── View ──────────────────────────────────────────────
+        /** Canvas point to world (node coordinate) space. */
+        Point toWorld(Point p) {
+            return new Point((int) Math.floor((p.x - panX) / zoom), (int) Math.floor((p.y - panY) / zoom));
+        }
+
+        /** Hit radius in world units; never less than a few screen pixels when zoomed out. */
+        int hitRadius() {
+            return (int) Math.ceil(Math.max(HIT_R, MIN_HIT_PX / zoom));
+        }
+
+        /** Scales the view by the factor, keeping the world point under the anchor still. */
+        void zoomAt(Point anchor, double factor) {
+            double next = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+            panX = anchor.x - (anchor.x - panX) * next / zoom;
+            panY = anchor.y - (anchor.y - panY) * next / zoom;
+            zoom = next;
+            repaint();
+        }
+
+        /** Fits the whole building into the canvas. */
+        void fitView() {
+            Rectangle b = worldBounds;
+            if (getWidth() == 0 || b.isEmpty()) return;
+            zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM,
+                   Math.min(getWidth() / (double) b.width, getHeight() / (double) b.height)));
+            panX = (getWidth()  - b.width  * zoom) / 2 - b.x * zoom;
+            panY = (getHeight() - b.height * zoom) / 2 - b.y * zoom;
+            repaint();
+        }
+
+        // Keeps the coordinates as canvas pixels when the building fits, fits it otherwise
+        private void placeView() {
+            viewPlaced = true;
+            Rectangle b = worldBounds;
+            if (b.x < 0 || b.y < 0 || b.x + b.width > getWidth() || b.y + b.height > getHeight()) fitView();
+        }
+
+        // Individual nodes while a bounded number of them can be on screen, floor blocks beyond
+        private Detail levelOfDetail() {
+            if (zoom < ZOOM_BLOCKS || estimatedVisibleNodes() > NODE_BUDGET) return Detail.BLOCKS;
+            return zoom < ZOOM_FULL ? Detail.SIMPLE : Detail.FULL;
+        }
+
+        // Node count scaled by the visible share of the building's area, O(1)
+        private double estimatedVisibleNodes() {
+            Rectangle b       = worldBounds;
+            Rectangle visible = new Rectangle(toWorld(new Point(0, 0)),
+                                              new Dimension((int) Math.ceil(getWidth() / zoom) + 1,
+                                                            (int) Math.ceil(getHeight() / zoom) + 1));
+            Rectangle shown   = b.intersection(visible);
+            if (shown.isEmpty()) return 0;
+            return nodeList.size() * ((double) shown.width * shown.height) / ((double) b.width * b.height);
+        }
+
+        // Hand cursor over a node, crosshair elsewhere
+        private void hover(Point p) {
+            int cursor = nodeAt(p) != null ? Cursor.HAND_CURSOR : Cursor.CROSSHAIR_CURSOR;
+            if (getCursor().getType() != cursor) setCursor(Cursor.getPredefinedCursor(cursor));
+        }
+
+        /** Forces the static layer to be redrawn, e.g. after node positions changed. */
+        void invalidateStaticLayer() {
+            staticLayer = null;
+            repaint();
         }
 
         @Override protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             Graphics2D g2 = (Graphics2D) g;
+            applyHints(g2);
+            if (!viewPlaced) placeView();
+
+            Detail detail = levelOfDetail();
+            if (detail == Detail.BLOCKS) {
+                drawFloorBlocks(g2);
+                drawPathHighlights(g2);
+                return;
+            }
+            drawStaticLayer(g2, detail);
+            drawPathHighlights(g2);
+            AffineTransform screen = g2.getTransform();
+            g2.translate(panX, panY);
+            g2.scale(zoom, zoom);
+            drawNodes(g2, detail);
+            g2.setTransform(screen);
+        }
+
+        private void applyHints(Graphics2D g2) {
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,     RenderingHints.VALUE_ANTIALIAS_ON);
             g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
             g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,   RenderingHints.VALUE_STROKE_PURE);
-            drawFloorLabels(g2);
-            drawEdges(g2);
-            drawPathHighlights(g2);
-            drawNodes(g2);
+        }
+
+        // An image of w x h logical pixels at the given display scale, with its graphics set up
+        private BufferedImage newLayer(int w, int h, double scale, boolean opaque) {
+            return new BufferedImage(Math.max(1, (int) Math.ceil(w * scale)),
+                                     Math.max(1, (int) Math.ceil(h * scale)),
+                                     opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        private Graphics2D layerGraphics(BufferedImage img, double scale) {
+            Graphics2D g2 = img.createGraphics();
+            applyHints(g2);
+            g2.scale(scale, scale);
+            return g2;
+        }
+
+        // World-space window covered by a screen rectangle, grown by pad world units
+        private Rectangle worldWindow(Rectangle screen, int pad) {
+            Point a = toWorld(screen.getLocation());
+            return new Rectangle(a.x - pad, a.y - pad,
+                                 (int) Math.ceil(screen.width  / zoom) + 2 * pad + 1,
+                                 (int) Math.ceil(screen.height / zoom) + 2 * pad + 1);
+        }
+
+        // ── Static layer ──────────────────────────────────────
+        private void drawStaticLayer(Graphics2D g2, Detail detail) {
+            int           w     = getWidth(), h = getHeight();
+            double        scale = g2.getTransform().getScaleX();   // > 1 on HiDPI displays
+            CompiledGraph graph = engine.getCompiledGraph();
+            double        ratio = zoom / staticZoom;
+            if (staticLayer == null || staticGraph != graph || staticScale != scale || staticDetail != detail
+                    || ratio > LAYER_BAND || ratio < 1 / LAYER_BAND || !layerCovers(w, h)) {
+                renderStaticLayer(w, h, scale, graph, detail);
+                ratio = 1;
+            }
+            if (ratio != 1) settle.restart();   // stretched: re-render once the zoom stops changing
+
+            AffineTransform screen = g2.getTransform();
+            double          tx     = staticX * zoom + panX, ty = staticY * zoom + panY;
+            if (ratio == 1) {
+                g2.translate(Math.round(tx), Math.round(ty));   // whole pixels keep a pure pan sharp
+            } else {
+                g2.translate(tx, ty);
+                g2.scale(ratio, ratio);
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            }
+            g2.drawImage(staticLayer, 0, 0, staticW, staticH, null);
+            g2.setTransform(screen);
+        }
+
+        // Rasterizes the viewport grown by LAYER_PAD on every side at the current zoom
+        private void renderStaticLayer(int w, int h, double scale, CompiledGraph graph, Detail detail) {
+            int mx = (int) Math.ceil(w * LAYER_PAD), my = (int) Math.ceil(h * LAYER_PAD);
+            staticW      = w + 2 * mx;
+            staticH      = h + 2 * my;
+            staticLayer  = newLayer(staticW, staticH, scale, true);
+            staticGraph  = graph;
+            staticScale  = scale;
+            staticZoom   = zoom;
+            staticX      = (-mx - panX) / zoom;
+            staticY      = (-my - panY) / zoom;
+            staticDetail = detail;
+            Graphics2D lg = layerGraphics(staticLayer, scale);
+            lg.setColor(BG);
+            lg.fillRect(0, 0, staticW, staticH);
+            Rectangle area = worldWindow(new Rectangle(-mx, -my, staticW, staticH), 0);
+            lg.scale(zoom, zoom);
+            lg.translate(-staticX, -staticY);
+            drawFloorLabels(lg);
+            drawEdges(lg, area, detail == Detail.FULL);
+            lg.dispose();
+        }
+
+        // Whether the layer spans the whole viewport in world space
+        private boolean layerCovers(int w, int h) {
+            return -panX / zoom >= staticX && (w - panX) / zoom <= staticX + staticW / staticZoom
+                && -panY / zoom >= staticY && (h - panY) / zoom <= staticY + staticH / staticZoom;
         }
 
         // ── Floor labels ──────────────────────────────────────
+        // Centred above each floor's nodes, in world space
         private void drawFloorLabels(Graphics2D g2) {
-            int[] cx = {160, 420, 680, 940};
-            g2.setFont(new Font("Courier New", Font.BOLD, 12));
-            for (int fl = 0; fl < 4; fl++) {
-                String lbl = "Floor " + fl + (fl == 0 ? "  (exits)" : "");
-                FontMetrics fm = g2.getFontMetrics();
-                int x = cx[fl] - fm.stringWidth(lbl) / 2;
+            g2.setFont(LABEL_FONT);
+            FontMetrics fm = g2.getFontMetrics();
+            for (int k = 0; k < floorLevel.length; k++) {
+                String lbl = floorLabel(k);
+                Rectangle b = floorBox[k];
+                int x = b.x + b.width / 2 - fm.stringWidth(lbl) / 2;
+                int y = b.y - 52;
                 // Dim pill background
-                g2.setColor(new Color(40, 45, 65, 200));
-                g2.fillRoundRect(x - 6, 28, fm.stringWidth(lbl) + 12, 20, 8, 8);
-                g2.setColor(fl == 0 ? NODE_GREEN.darker() : TEXT_DIM);
-                g2.drawString(lbl, x, 43);
+                g2.setColor(FLOOR_PILL);
+                g2.fillRoundRect(x - 6, y, fm.stringWidth(lbl) + 12, 20, 8, 8);
+                g2.setColor(floorHasExit[k] ? NODE_GREEN.darker() : TEXT_DIM);
+                g2.drawString(lbl, x, y + 15);
             }
         }
 
-        // ── Edges ─────────────────────────────────────────────
-        private void drawEdges(Graphics2D g2) {
-            // Draw inter-floor bridge edges first (behind ring edges)
-            Set<String> drawn = new HashSet<>();
-            Color BRIDGE_COL = new Color(180, 130, 255, 160); // purple tint for bridges
-            float[] dash = {6f, 4f};
-            Stroke bridgeStroke = new BasicStroke(1.8f, BasicStroke.CAP_ROUND,
-                                                  BasicStroke.JOIN_ROUND, 1f, dash, 0f);
-            Stroke ringStroke   = new BasicStroke(1.8f, BasicStroke.CAP_ROUND,
-                                                  BasicStroke.JOIN_ROUND);
-            for (Node n : nodeList) {
-                Point p1 = positions.get(n);
-                for (Map.Entry<Node, Float> e : n.getNeighbors().entrySet()) {
-                    Node   m   = e.getKey();
-                    String key = n.getId().compareTo(m.getId()) < 0
-                                 ? n.getId() + "_" + m.getId()
-                                 : m.getId() + "_" + n.getId();
-                    if (!drawn.add(key)) continue;
-                    Point p2 = positions.get(m);
-
-                    boolean isBridge = n.getFloor() != m.getFloor();
-                    g2.setColor(isBridge ? BRIDGE_COL : EDGE_COL);
-                    g2.setStroke(isBridge ? bridgeStroke : ringStroke);
-                    g2.drawLine(p1.x, p1.y, p2.x, p2.y);
-
-                    // Weight pill
-                    int mx = (p1.x + p2.x) / 2, my = (p1.y + p2.y) / 2;
-                    g2.setFont(new Font("Courier New", Font.PLAIN, 10));
-                    String      wt = String.valueOf((int) e.getValue().floatValue());
-                    FontMetrics fm = g2.getFontMetrics();
-                    int tw = fm.stringWidth(wt);
-                    g2.setColor(new Color(22, 25, 38, 200));
-                    g2.fillRoundRect(mx - tw / 2 - 3, my - 8, tw + 6, 14, 6, 6);
-                    g2.setColor(isBridge ? BRIDGE_COL.brighter() : EDGE_WEIGHT);
-                    g2.drawString(wt, mx - tw / 2, my + 3);
-                }
+        private String floorLabel(int k) {
+            return "Floor " + floorLevel[k] + (floorHasExit[k] ? "  (exits)" : "");
+        }
+
+        // ── Floor blocks ──────────────────────────────────────
+        // Zoomed out: one block per floor, tinted from blue to red by its
+        // impassable fraction, with the label in screen space. O(floors).
+        private void drawFloorBlocks(Graphics2D g2) {
+            g2.setFont(LABEL_FONT);
+            FontMetrics fm = g2.getFontMetrics();
+            for (int k = 0; k < floorLevel.length; k++) {
+                Rectangle b = floorBox[k];
+                int x0 = (int) Math.floor((b.x - NODE_R) * zoom + panX);
+                int y0 = (int) Math.floor((b.y - NODE_R) * zoom + panY);
+                int x1 = (int) Math.ceil((b.x + b.width  + NODE_R) * zoom + panX);
+                int y1 = (int) Math.ceil((b.y + b.height + NODE_R) * zoom + panY);
+                if (x1 < 0 || y1 < 0 || x0 > getWidth() || y0 > getHeight()) continue;
+                int bw = Math.max(2, x1 - x0), bh = Math.max(2, y1 - y0);
+
+                float blocked = floorSize[k] == 0 ? 0f : floorBlocked.get(k) / (float) floorSize[k];
+                g2.setColor(blend(NODE_BLUE, NODE_RED, blocked));
+                g2.fillRoundRect(x0, y0, bw, bh, 6, 6);
+                g2.setColor(BORDER_COL);
+                g2.setStroke(THIN_STROKE);
+                g2.drawRoundRect(x0, y0, bw, bh, 6, 6);
+
+                // Full label when the block is wide enough, the level alone otherwise
+                String lbl = floorLabel(k) + String.format("  %.0f%% blocked", blocked * 100);
+                if (fm.stringWidth(lbl) > bw) lbl = "F" + floorLevel[k];
+                if (fm.stringWidth(lbl) > bw) continue;
+                int    lx  = x0 + bw / 2 - fm.stringWidth(lbl) / 2;
+                g2.setColor(FLOOR_PILL);
+                g2.fillRoundRect(lx - 6, y0 - 26, fm.stringWidth(lbl) + 12, 20, 8, 8);
+                g2.setColor(floorHasExit[k] ? NODE_GREEN.darker() : TEXT_DIM);
+                g2.drawString(lbl, lx, y0 - 11);
+            }
+
+            // Selection marker
+            Integer sel = selectedNode == null ? null : nodeIndex.get(selectedNode);
+            if (sel != null) {
+                int sx = (int) Math.round(nodeX[sel] * zoom + panX), sy = (int) Math.round(nodeY[sel] * zoom + panY);
+                g2.setColor(SEL_RING);
+                g2.setStroke(SEL_STROKE);
+                g2.drawOval(sx - 7, sy - 7, 14, 14);
             }
         }
 
+        // ── Edges ─────────────────────────────────────────────
+        private void drawEdges(Graphics2D g2, Rectangle area, boolean weights) {
+            g2.setFont(WEIGHT_FONT);
+            FontMetrics fm = g2.getFontMetrics();
+            edgeGrid.forEachIn(area.x, area.y, area.x + area.width, area.y + area.height, j -> {
+                int     a        = edgeFrom[j], b = edgeTo[j];
+                boolean isBridge = nodeList.get(a).getFloor() != nodeList.get(b).getFloor();
+                g2.setColor(isBridge ? BRIDGE_COL : EDGE_COL);
+                g2.setStroke(isBridge ? BRIDGE_STROKE : EDGE_STROKE);
+                g2.drawLine(nodeX[a], nodeY[a], nodeX[b], nodeY[b]);
+                if (!weights) return;
+
+                // Weight pill
+                int    mx = (nodeX[a] + nodeX[b]) / 2, my = (nodeY[a] + nodeY[b]) / 2;
+                String wt = String.valueOf((int) edgeWeight[j]);
+                int    tw = fm.stringWidth(wt);
+                g2.setColor(WEIGHT_PILL);
+                g2.fillRoundRect(mx - tw / 2 - 3, my - 8, tw + 6, 14, 6, 6);
+                g2.setColor(isBridge ? BRIDGE_WEIGHT : EDGE_WEIGHT);
+                g2.drawString(wt, mx - tw / 2, my + 3);
+            });
+        }
+
         // ── Path highlights ────────────────────────────────────
+        // In screen space, so lines and badges keep their size at any zoom
         private void drawPathHighlights(Graphics2D g2) {
+            g2.setFont(BADGE_FONT);
+            FontMetrics fm = g2.getFontMetrics();
             for (int pi = 0; pi < foundPaths.size(); pi++) {
-                PathCandidate pc    = foundPaths.get(pi);
-                Color         col   = PATH_COLORS[pi % PATH_COLORS.length];
-                float         alpha = 1f - pi * 0.2f;
-                Color lineCol = new Color(col.getRed(), col.getGreen(), col.getBlue(),
-                                          (int)(255 * alpha));
-                g2.setStroke(new BasicStroke(4f + (foundPaths.size() - pi),
-                             BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(lineCol);
+                PathCandidate pc = foundPaths.get(pi);
+                int           ci = pi % PATH_COLORS.length;
+                g2.setStroke(PATH_STROKES[Math.min(foundPaths.size() - pi, PATH_STROKES.length) - 1]);
+                g2.setColor(PATH_LINE_COLORS[ci]);
 
                 for (int i = 0; i < pc.nodes.size() - 1; i++) {
-                    Point pa = positions.get(pc.nodes.get(i));
-                    Point pb = positions.get(pc.nodes.get(i + 1));
-                    if (pa != null && pb != null) g2.drawLine(pa.x, pa.y, pb.x, pb.y);
+                    Integer a = nodeIndex.get(pc.nodes.get(i));
+                    Integer b = nodeIndex.get(pc.nodes.get(i + 1));
+                    if (a != null && b != null)
+                        g2.drawLine(screenX(a), screenY(a), screenX(b), screenY(b));
                 }
 
                 // Distance badge near midpoint
-                int   mid = pc.nodes.size() / 2;
-                Point mp  = positions.get(pc.nodes.get(mid));
-                if (mp != null) {
-                    String      badge = "#" + (pi + 1) + "  " + String.format("%.0f", pc.totalDistance);
-                    g2.setFont(new Font("Courier New", Font.BOLD, 11));
-                    FontMetrics fm    = g2.getFontMetrics();
-                    int         bw    = fm.stringWidth(badge) + 10;
-                    g2.setColor(new Color(col.getRed(), col.getGreen(), col.getBlue(), 200));
-                    g2.fillRoundRect(mp.x + 8, mp.y - 18, bw, 18, 8, 8);
+                Integer mid = nodeIndex.get(pc.nodes.get(pc.nodes.size() / 2));
+                if (mid != null) {
+                    int    mx    = screenX(mid), my = screenY(mid);
+                    String badge = "#" + (pi + 1) + "  " + Math.round(pc.totalDistance);
+                    int    bw    = fm.stringWidth(badge) + 10;
+                    g2.setColor(PATH_BADGE_COLORS[ci]);
+                    g2.fillRoundRect(mx + 8, my - 18, bw, 18, 8, 8);
                     g2.setColor(BG);
-                    g2.drawString(badge, mp.x + 13, mp.y - 4);
+                    g2.drawString(badge, mx + 13, my - 4);
                 }
             }
         }
 
+        private int screenX(int i) { return (int) Math.round(nodeX[i] * zoom + panX); }
+        private int screenY(int i) { return (int) Math.round(nodeY[i] * zoom + panY); }
+
         // ── Nodes ──────────────────────────────────────────────
-        private void drawNodes(Graphics2D g2) {
-            for (Node n : nodeList) {
-                Point   p      = positions.get(n);
-                boolean isExit = n instanceof Exit;
-                boolean pass   = n.isPassable();
+        private void drawNodes(Graphics2D g2, Detail detail) {
+            double scale = g2.getTransform().getScaleX();
+            if (detail == Detail.FULL && (sprites[0] == null || spriteScale != scale)) buildSprites(scale);
+
+            // Only nodes whose drawing can reach the clip, which is in world space here
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) clip = worldWindow(new Rectangle(0, 0, getWidth(), getHeight()), 0);
+            FontMetrics idFm   = g2.getFontMetrics(LABEL_FONT);
+            FontMetrics subFm  = g2.getFontMetrics(SUB_FONT);
+            boolean     labels = zoom >= ZOOM_LABELS;
+            nodeGrid.forEachIn(clip.x - CULL_PAD, clip.y - CULL_PAD,
+                               clip.x + clip.width + CULL_PAD, clip.y + clip.height + CULL_PAD,
+                               detail == Detail.FULL
+                                   ? i -> drawNode(g2, i, idFm, subFm)
+                                   : i -> drawFlatNode(g2, i, idFm, labels));
+        }
+
+        private void drawNode(Graphics2D g2, int i, FontMetrics idFm, FontMetrics subFm) {
+            Node    n      = nodeList.get(i);
+            int     x      = nodeX[i], y = nodeY[i];
+            int     half   = NODE_R + SPRITE_PAD;
+            boolean isExit = n instanceof Exit;
+            boolean pass   = n.isPassable();
+
+            // Selection glow + ring
+            if (n == selectedNode) {
+                g2.setColor(SEL_GLOW);
+                g2.fillOval(x - NODE_R - 8, y - NODE_R - 8,
+                            (NODE_R + 8) * 2, (NODE_R + 8) * 2);
+                g2.setColor(SEL_RING);
+                g2.setStroke(SEL_STROKE);
+                g2.drawOval(x - NODE_R - 5, y - NODE_R - 5,
+                            (NODE_R + 5) * 2, (NODE_R + 5) * 2);
+            }
+
+            // Body: shadow, gradient, outline and exit marker in one blit
+            g2.drawImage(sprites[spriteIndex(isExit, pass)], x - half, y - half, half * 2, half * 2, null);
+
+            // ID label
+            g2.setColor(TEXT_BRIGHT);
+            g2.setFont(LABEL_FONT);
+            String lbl = n.getId();
+            g2.drawString(lbl, x - idFm.stringWidth(lbl) / 2, y + idFm.getAscent() / 2 - 1);
+
+            // Sub-label: exit name or temperature
+            g2.setFont(SUB_FONT);
+            g2.setColor(TEXT_DIM);
+            String sub = isExit ? ((Exit) n).getExitName()
+                                : Math.round(n.getTemperature()) + "C  F" + n.getFloor();
+            g2.drawString(sub, x - subFm.stringWidth(sub) / 2, y + NODE_R + 13);
+
+            // Impassable X overlay
+            if (!pass) {
+                g2.setColor(CROSS_COL);
+                g2.setStroke(CROSS_STROKE);
+                int o = NODE_R - 6;
+                g2.drawLine(x - o, y - o, x + o, y + o);
+                g2.drawLine(x + o, y - o, x - o, y + o);
+            }
+        }
+
+        // Reduced detail: flat disc, selection ring and, while legible, the id
+        private void drawFlatNode(Graphics2D g2, int i, FontMetrics idFm, boolean label) {
+            Node    n    = nodeList.get(i);
+            int     x    = nodeX[i], y = nodeY[i];
+            boolean pass = n.isPassable();
+            g2.setColor(pass ? (n instanceof Exit ? NODE_GREEN : NODE_BLUE) : NODE_RED);
+            g2.fillOval(x - NODE_R, y - NODE_R, NODE_R * 2, NODE_R * 2);
+            if (n == selectedNode) {
+                g2.setColor(SEL_RING);
+                g2.setStroke(SEL_STROKE);
+                g2.drawOval(x - NODE_R - 5, y - NODE_R - 5, (NODE_R + 5) * 2, (NODE_R + 5) * 2);
+            }
+            if (label) {
+                g2.setColor(TEXT_BRIGHT);
+                g2.setFont(LABEL_FONT);
+                String lbl = n.getId();
+                g2.drawString(lbl, x - idFm.stringWidth(lbl) / 2, y + idFm.getAscent() / 2 - 1);
+            }
+        }
+
+        private int spriteIndex(boolean isExit, boolean pass) {
+            return (isExit ? 2 : 0) + (pass ? 1 : 0);
+        }
+
+        // Every node of one kind and state looks the same apart from its labels,
+        // so its body is drawn once per display scale and zoom and blitted per node.
+        private void buildSprites(double scale) {
+            int half = NODE_R + SPRITE_PAD;
+            for (int k = 0; k < 4; k++) {
+                boolean isExit = k >= 2, pass = (k & 1) != 0;
                 Color   fill   = pass ? (isExit ? NODE_GREEN : NODE_BLUE) : NODE_RED;
 
-                // Selection glow + ring
-                if (n == selectedNode) {
-                    g2.setColor(new Color(SEL_RING.getRed(), SEL_RING.getGreen(),
-                                          SEL_RING.getBlue(), 60));
-                    g2.fillOval(p.x - NODE_R - 8, p.y - NODE_R - 8,
-                                (NODE_R + 8) * 2, (NODE_R + 8) * 2);
-                    g2.setColor(SEL_RING);
-                    g2.setStroke(new BasicStroke(2.5f));
-                    g2.drawOval(p.x - NODE_R - 5, p.y - NODE_R - 5,
-                                (NODE_R + 5) * 2, (NODE_R + 5) * 2);
-                }
+                BufferedImage img = newLayer(half * 2, half * 2, scale, false);
+                Graphics2D    g2  = layerGraphics(img, scale);
+                g2.translate(half, half);
 
                 // Drop shadow
-                g2.setColor(new Color(0, 0, 0, 80));
-                g2.fillOval(p.x - NODE_R + 3, p.y - NODE_R + 4, NODE_R * 2, NODE_R * 2);
+                g2.setColor(SHADOW);
+                g2.fillOval(-NODE_R + 3, -NODE_R + 4, NODE_R * 2, NODE_R * 2);
 
                 // Radial gradient fill
-                RadialGradientPaint grad = new RadialGradientPaint(
-                    new Point2D.Float(p.x - NODE_R / 3f, p.y - NODE_R / 3f),
+                g2.setPaint(new RadialGradientPaint(
+                    new Point2D.Float(-NODE_R / 3f, -NODE_R / 3f),
                     NODE_R * 1.2f, new float[]{0f, 1f},
-                    new Color[]{fill.brighter(), fill.darker()});
-                g2.setPaint(grad);
-                g2.fillOval(p.x - NODE_R, p.y - NODE_R, NODE_R * 2, NODE_R * 2);
+                    new Color[]{fill.brighter(), fill.darker()}));
+                g2.fillOval(-NODE_R, -NODE_R, NODE_R * 2, NODE_R * 2);
 
                 // Outline
                 g2.setPaint(fill.brighter());
-                g2.setStroke(new BasicStroke(1.5f));
-                g2.drawOval(p.x - NODE_R, p.y - NODE_R, NODE_R * 2, NODE_R * 2);
+                g2.setStroke(OUTLINE_STROKE);
+                g2.drawOval(-NODE_R, -NODE_R, NODE_R * 2, NODE_R * 2);
 
                 // Exit diamond marker
                 if (isExit) {
-                    int[] xs = {p.x, p.x + 7, p.x, p.x - 7};
-                    int[] ys = {p.y - 7, p.y, p.y + 7, p.y};
+                    int[] xs = {0, 7, 0, -7};
+                    int[] ys = {-7, 0, 7, 0};
                     g2.setColor(BG);           g2.fillPolygon(xs, ys, 4);
-                    g2.setColor(TEXT_BRIGHT);  g2.setStroke(new BasicStroke(1f));
+                    g2.setColor(TEXT_BRIGHT);  g2.setStroke(THIN_STROKE);
                     g2.drawPolygon(xs, ys, 4);
                 }
-
-                // ID label
-                g2.setColor(TEXT_BRIGHT);
-                g2.setFont(new Font("Courier New", Font.BOLD, 12));
-                FontMetrics fm  = g2.getFontMetrics();
-                String      lbl = n.getId();
-                g2.drawString(lbl, p.x - fm.stringWidth(lbl) / 2, p.y + fm.getAscent() / 2 - 1);
-
-                // Sub-label: exit name or temperature
-                g2.setFont(new Font("Courier New", Font.PLAIN, 9));
-                g2.setColor(TEXT_DIM);
-                String sub = isExit ? ((Exit) n).getExitName()
-                                    : String.format("%.0fC  F%d",
-                                                    n.getTemperature(), n.getFloor());
-                FontMetrics fm2 = g2.getFontMetrics();
-                g2.drawString(sub, p.x - fm2.stringWidth(sub) / 2, p.y + NODE_R + 13);
-
-                // Impassable X overlay
-                if (!pass) {
-                    g2.setColor(new Color(255, 80, 80, 180));
-                    g2.setStroke(new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                    int o = NODE_R - 6;
-                    g2.drawLine(p.x - o, p.y - o, p.x + o, p.y + o);
-                    g2.drawLine(p.x + o, p.y - o, p.x - o, p.y + o);
-                }
+                g2.dispose();
+                sprites[k] = img;
             }
+            spriteScale = scale;
         }
     }
 
@@ -530,6 +959,7 @@ public class GraphGUI extends JFrame {
     // ─────────────────────────────────────────────────────────
     private void handleClick(Point click) {
         Node hit = nodeAt(click);
+        cancelSearch();
         if (hit == null) {
             selectedNode = null;
             foundPaths.clear();
@@ -540,42 +970,92 @@ public class GraphGUI extends JFrame {
         selectedNode = hit;
 
         if (mode == Mode.CHANGE_PASSABILITY) {
-            boolean newVal = !hit.isPassable();
-            hit.setPassable(newVal);
+            // Through the engine's writer, so searches see the change once it is published
+            boolean           newVal = !hit.isPassable();
+            EnvironmentWriter writer = engine.getEnvironmentWriter();
+            writer.setPassable(hit, newVal);
+            writer.publish();
             setStatus("Node " + hit.getId() + "  passable=" + newVal);
             foundPaths.clear();
 
         } else { // FIND_PATH
             foundPaths.clear();
-            List<Exit> exits = nodeList.stream()
-                    .filter(n -> n instanceof Exit && n.isPassable())
-                    .map(n -> (Exit) n)
-                    .collect(Collectors.toList());
-
-            if (exits.isEmpty()) {
+            if (!engine.hasPassableExit()) {
                 setStatus("No passable exits in the graph.");
             } else {
-                PriorityQueue<PathCandidate> allPaths = new PriorityQueue<>();
-                for (Exit ex : exits)
-                    allPaths.addAll(hit.findKShortestPaths(ex, 3));
-                for (int i = 0; i < 3 && !allPaths.isEmpty(); i++)
-                    foundPaths.add(allPaths.poll());
-
-                setStatus(foundPaths.isEmpty()
-                    ? "No reachable paths from " + hit.getId() + "."
-                    : "Top " + foundPaths.size() + " paths from " + hit.getId() + " found.");
+                startSearch(hit);
             }
         }
         canvas.repaint();
         updateInfoArea();
     }
 
-    private Node nodeAt(Point p) {
-        for (Node n : nodeList) {
-            Point np = positions.get(n);
-            if (np != null && p.distance(np) <= HIT_R) return n;
+    // ── Background path search ────────────────────────────────
+    // Runs the exit search off the EDT; only the latest request may publish.
+    private void startSearch(Node source) {
+        long seq = ++searchSeq;
+        setStatus("Searching paths from " + source.getId() + "...");
+        searchProgress.setVisible(true);
+        pendingSearch = searchExecutor.submit(() -> {
+            try {
+                List<PathCandidate> routes = engine.topRoutesToExits(source, 3);
+                SwingUtilities.invokeLater(() -> showRoutes(seq, source, routes));
+            } catch (CancellationException e) {
+                // superseded; the newer request owns the status bar
+            } catch (RuntimeException e) {
+                SwingUtilities.invokeLater(() -> searchFailed(seq, e));
+            }
+        });
+    }
+
+    private void showRoutes(long seq, Node source, List<PathCandidate> routes) {
+        if (seq != searchSeq) return;   // a newer click took over
+        pendingSearch = null;
+        searchProgress.setVisible(false);
+        foundPaths.clear();
+        foundPaths.addAll(routes);
+        setStatus(routes.isEmpty()
+            ? "No reachable paths from " + source.getId() + "."
+            : "Top " + routes.size() + " paths from " + source.getId() + " found.");
+        canvas.repaint();
+        updateInfoArea();
+    }
+
+    private void searchFailed(long seq, RuntimeException e) {
+        if (seq != searchSeq) return;
+        pendingSearch = null;
+        searchProgress.setVisible(false);
+        setStatus("Path search failed: " + e.getMessage());
+    }
+
+    private void cancelSearch() {
+        searchSeq++;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+            pendingSearch = null;
         }
-        return null;
+        searchProgress.setVisible(false);
+    }
+
+    // Nearest node within the hit radius of a canvas point, from the spatial grid
+    private Node nodeAt(Point p) {
+        Point w = canvas.toWorld(p);
+        int   i = nodeGrid.nearest(w.x, w.y, canvas.hitRadius());
+        return i < 0 ? null : nodeList.get(i);
+    }
+
+    // May run on any thread that changes a node
+    private void floorPassabilityChanged(Node node, boolean passable) {
+        floorBlocked.addAndGet(nodeFloor[nodeIndex.get(node)], passable ? -1 : 1);
+        canvas.repaint();
+    }
+
+    // Linear mix of two colours, t = 0 gives a, t = 1 gives b
+    private static Color blend(Color a, Color b, float t) {
+        t = Math.max(0f, Math.min(1f, t));
+        return new Color(Math.round(a.getRed()   + (b.getRed()   - a.getRed())   * t),
+                         Math.round(a.getGreen() + (b.getGreen() - a.getGreen()) * t),
+                         Math.round(a.getBlue()  + (b.getBlue()  - a.getBlue())  * t));
     }
 
     // ── Rounded border ────────────────────────────────────────
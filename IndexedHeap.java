@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap over int node ids with float keys.
+ *
+ * <p>Each id is present at most once; {@link #offer} on an id already in the
+ * heap lowers its key in place (decrease-key) instead of pushing a duplicate
+ * entry. All storage is allocated up front, so pushes and polls never
+ * allocate.
+ */
+final class IndexedHeap extends SearchQueue {
+
+    private static final int D = 4;
+
+    private final int[]   heap;   // heap slot -> node id
+    private final float[] keys;   // heap slot -> key
+    private final int[]   pos;    // node id   -> heap slot, or -1 if absent
+    private int size;
+
+    IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new float[capacity];
+        pos  = new int[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    @Override boolean isEmpty()       { return size == 0; }
+    @Override int     size()          { return size; }
+    @Override boolean contains(int v) { return pos[v] >= 0; }
+
+    @Override float minKey() { return keys[0]; }
+
+    /** Removes all entries in O(size). */
+    @Override
+    void clear() {
+        for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+        size = 0;
+    }
+
+    @Override
+    void offer(int v, float key) {
+        int i = pos[v];
+        if (i < 0) {
+            i = size++;
+        } else if (key >= keys[i]) {
+            return;
+        }
+        siftUp(i, v, key);
+    }
+
+    @Override
+    int poll() {
+        int top = heap[0];
+        pos[top] = -1;
+        int   last    = heap[--size];
+        float lastKey = keys[size];
+        if (size > 0) siftDown(0, last, lastKey);
+        return top;
+    }
+
+    private void siftUp(int i, int v, float key) {
+        while (i > 0) {
+            int parent = (i - 1) / D;
+            if (keys[parent] <= key) break;
+            place(i, heap[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, v, key);
+    }
+
+    private void siftDown(int i, int v, float key) {
+        while (true) {
+            int first = i * D + 1;
+            if (first >= size) break;
+            int   best    = first;
+            float bestKey = keys[first];
+            int   end     = Math.min(first + D, size);
+            for (int c = first + 1; c < end; c++)
+                if (keys[c] < bestKey) { best = c; bestKey = keys[c]; }
+            if (bestKey >= key) break;
+            place(i, heap[best], bestKey);
+            i = best;
+        }
+        place(i, v, key);
+    }
+
+    private void place(int i, int v, float key) {
+        heap[i] = v;
+        keys[i] = key;
+        pos[v]  = i;
+    }
+}
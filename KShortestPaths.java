@@ -0,0 +1,344 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy enumeration of simple paths in ascending order of distance, by Yen's
+ * algorithm over a {@link CompiledGraph}.
+ *
+ * <p>The confirmed set A and the candidate queue B are kept between calls, so
+ * each {@link #next()} pays only for the spur searches of the path confirmed
+ * before it. Callers can stop as soon as a path meets their own constraints
+ * instead of choosing K up front:
+ *
+ * <pre>
+ *   Optional&lt;PathCandidate&gt; route = graph.iterateShortestPaths(source, target)
+ *           .stream()
+ *           .filter(p -&gt; p.nodes.size() &lt;= 12)
+ *           .findFirst();
+ * </pre>
+ *
+ * <p>Without a limit, B keeps every candidate found, which on dense graphs
+ * can run to hundreds of thousands of entries. When the caller knows it needs
+ * at most K paths, {@link #limit(int)} caps B at K - |A| entries, since no
+ * candidate beyond those can ever be returned, and lets spur searches give up
+ * once they can no longer beat the worst candidate kept.
+ *
+ * <p>Passability is read when a path is computed, so the nodes should not
+ * change state while an enumeration is in progress. Instances are not thread
+ * safe; with a pool, the spur searches of one step run in parallel but the
+ * enumeration itself belongs to one caller.
+ *
+ * <p>Each step checks the calling thread's interrupt flag before every spur
+ * search and throws {@link CancellationException} once it is set, so a
+ * superseded query stops within one spur search. An enumeration that threw
+ * must be discarded.
+ *
+ * <p>Every spur search is reported as a {@link RouteQueryEvent} when a flight
+ * recording is running, and the work of all searches so far is summed up for
+ * the event of the whole query.
+ */
+public final class KShortestPaths implements Iterator<PathCandidate> {
+
+    // Shorter previous paths run their spur searches sequentially; forking would cost more
+    private static final int PARALLEL_SPURS = 4;
+
+    private final CompiledGraph              graph;
+    private final int                        source;
+    private final int                        target;   // node id, or CompiledGraph.ANY_EXIT
+    private final CompiledGraph.Heuristic    heuristic;
+    private final ForkJoinPool               pool;
+
+    private final List<int[]>                A    = new ArrayList<>();
+    private final TreeSet<Candidate>         B    = new TreeSet<>();
+    private final Set<Candidate>             seen = new HashSet<>();   // members of A and B
+
+    private int     limit = Integer.MAX_VALUE;   // most paths ever returned
+    private int     inserted;                    // insertion counter, breaks distance ties in B
+    private int[]   pending;                     // computed but not yet returned
+    private boolean exhausted;
+
+    // Work of every search so far; spur searches may run on pool threads. Field
+    // updaters rather than AtomicLongs keep enumerations from allocating for it.
+    private volatile long settled;
+    private volatile long pushes;
+
+    private static final AtomicLongFieldUpdater<KShortestPaths> SETTLED =
+            AtomicLongFieldUpdater.newUpdater(KShortestPaths.class, "settled");
+    private static final AtomicLongFieldUpdater<KShortestPaths> PUSHES =
+            AtomicLongFieldUpdater.newUpdater(KShortestPaths.class, "pushes");
+
+    private static final int[] NO_SPUR = new int[0];
+
+    /**
+     * A path held in B, stored as a root shared with the confirmed path it
+     * deviates from plus its own spur. Only the spur is allocated per
+     * candidate; the hash follows {@link Arrays#hashCode(int[])} of the full
+     * path and is computed once, so de-duplication never materializes it.
+     * Candidates order by distance, then by insertion.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final float dist;
+        final int[] root;     // confirmed path whose first `prefix` nodes are shared
+        final int   prefix;
+        final int[] spur;
+        final int   hash;
+        int         order;    // set when inserted into B
+
+        Candidate(float dist, int[] root, int prefix, int[] spur) {
+            this.dist   = dist;
+            this.root   = root;
+            this.prefix = prefix;
+            this.spur   = spur;
+            int h = 1;
+            for (int i = 0; i < prefix; i++) h = 31 * h + root[i];
+            for (int v : spur) h = 31 * h + v;
+            this.hash = h;
+        }
+
+        int length()   { return prefix + spur.length; }
+        int get(int i) { return i < prefix ? root[i] : spur[i - prefix]; }
+
+        int[] toArray() {
+            if (spur.length == 0 && prefix == root.length) return root;
+            int[] path = Arrays.copyOf(root, length());
+            System.arraycopy(spur, 0, path, prefix, spur.length);
+            return path;
+        }
+
+        @Override public int compareTo(Candidate o) {
+            int c = Float.compare(this.dist, o.dist);
+            return c != 0 ? c : Integer.compare(this.order, o.order);
+        }
+        @Override public int hashCode() { return hash; }
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Candidate)) return false;
+            Candidate c = (Candidate) o;
+            if (c.hash != hash || c.length() != length()) return false;
+            for (int i = 0; i < length(); i++) if (c.get(i) != get(i)) return false;
+            return true;
+        }
+    }
+
+    /**
+     * @param target    node id, or {@link CompiledGraph#ANY_EXIT} for the exit super-sink
+     * @param heuristic spur-search heuristic, or null for plain Dijkstra
+     * @param pool      pool for the spur searches, or null to run them on the calling thread
+     */
+    KShortestPaths(CompiledGraph graph, int source, int target,
+                   CompiledGraph.Heuristic heuristic, ForkJoinPool pool) {
+        this.graph     = graph;
+        this.source    = source;
+        this.target    = target;
+        this.heuristic = heuristic;
+        this.pool      = pool;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null && !exhausted) {
+            pending = advance();
+            exhausted = pending == null;
+        }
+        return pending != null;
+    }
+
+    @Override
+    public PathCandidate next() {
+        int[] path = nextPath();
+        if (path == null) throw new NoSuchElementException();
+        return new PathCandidate(graph.pathDistance(path), path, graph.nodes);
+    }
+
+    /**
+     * Caps the enumeration at {@code maxPaths} paths in total, which bounds
+     * the candidate store and enables spur pruning. Must be called before the
+     * first path is requested.
+     *
+     * @return this enumeration
+     */
+    public KShortestPaths limit(int maxPaths) {
+        if (maxPaths < 1) throw new IllegalArgumentException("maxPaths must be at least 1");
+        if (!A.isEmpty() || exhausted) throw new IllegalStateException("Enumeration has already started");
+        this.limit = maxPaths;
+        return this;
+    }
+
+    /** The remaining paths as a sequential, ordered stream. */
+    public Stream<PathCandidate> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /** Next path as node ids, or null when there are no more. */
+    int[] nextPath() {
+        if (!hasNext()) return null;
+        int[] path = pending;
+        pending = null;
+        return path;
+    }
+
+    /** Nodes settled by all searches of this enumeration so far. */
+    long settled() { return settled; }
+
+    /** Queue pushes of all searches of this enumeration so far. */
+    long pushes() { return pushes; }
+
+    /** Up to k further paths as node ids. */
+    List<int[]> take(int k) {
+        List<int[]> paths = new ArrayList<>(Math.min(k, 16));
+        for (int[] path; paths.size() < k && (path = nextPath()) != null; ) paths.add(path);
+        return paths;
+    }
+
+    // -------------------------
+    //  Yen's iteration
+    // -------------------------
+
+    /**
+     * Confirms the next path. The first call is a plain search; each later
+     * call deviates from the path confirmed last and promotes the best
+     * candidate in B.
+     */
+    private int[] advance() {
+        if (A.size() >= limit) return null;
+        if (A.isEmpty()) {
+            SearchWorkspace ws = graph.acquire();
+            int[]           first;
+            try {
+                long s0 = ws.settled, p0 = ws.pushes;
+                first = graph.spurPath(source, target, heuristic, false, false, Float.POSITIVE_INFINITY);
+                SETTLED.addAndGet(this, ws.settled - s0);
+                PUSHES.addAndGet(this, ws.pushes - p0);
+            } finally {
+                graph.release(ws);
+            }
+            if (first == null) return null;
+            A.add(first);
+            seen.add(new Candidate(0f, first, first.length, NO_SPUR));
+            return first;
+        }
+
+        int[] prevPath  = A.get(A.size() - 1);
+        int   capacity  = limit - A.size();      // at most this many more paths can be returned
+        // With the super-sink, the final exit is a spur node too: its sink edge can be removed
+        int   spurCount = prevPath.length - (target == CompiledGraph.ANY_EXIT ? 0 : 1);
+
+        // rootDist[i] = distance along prevPath from the source to prevPath[i]
+        float[] rootDist = new float[prevPath.length];
+        for (int i = 1; i < prevPath.length; i++)
+            rootDist[i] = rootDist[i - 1] + graph.weights[graph.edgeIndex(prevPath[i - 1], prevPath[i])];
+
+        // Once B is full, a spur must beat its worst candidate to be kept. The bound is
+        // fixed for the whole step so parallel and sequential runs prune alike.
+        float worst = B.size() >= capacity ? B.last().dist : Float.POSITIVE_INFINITY;
+
+        Candidate[] deviations = new Candidate[spurCount];
+        if (pool != null && spurCount >= PARALLEL_SPURS) {
+            Thread                        caller = Thread.currentThread();   // pool workers are never interrupted
+            List<ForkJoinTask<Candidate>> tasks  = new ArrayList<>(spurCount);
+            for (int si = 0; si < spurCount; si++) {
+                int spurIndex = si;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    checkInterrupted(caller);
+                    return deviation(prevPath, rootDist, spurIndex, worst);
+                }));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            for (int si = 0; si < spurCount; si++) deviations[si] = tasks.get(si).join();
+        } else {
+            for (int si = 0; si < spurCount; si++) {
+                checkInterrupted(Thread.currentThread());
+                deviations[si] = deviation(prevPath, rootDist, si, worst);
+            }
+        }
+
+        // Merge in spur-index order so parallel and sequential runs agree
+        for (Candidate c : deviations) {
+            if (c == null || seen.contains(c)) continue;
+            if (B.size() >= capacity) {
+                if (c.dist >= B.last().dist) continue;
+                seen.remove(B.pollLast());
+            }
+            c.order = inserted++;
+            B.add(c);
+            seen.add(c);
+        }
+
+        if (B.isEmpty()) return null;
+        int[] best = B.pollFirst().toArray();
+        A.add(best);
+        return best;
+    }
+
+    // Leaves the flag set so the caller's own interruption handling still sees it
+    private static void checkInterrupted(Thread caller) {
+        if (caller.isInterrupted()) throw new CancellationException("Path enumeration interrupted");
+    }
+
+    /**
+     * Shortest deviation from {@code prevPath} at spur index {@code si}: the
+     * root {@code prevPath[0 .. si - 1]} followed by the shortest spur from
+     * {@code prevPath[si]} that avoids the root and every confirmed path's next
+     * edge after the same root. Runs in a workspace leased from the graph.
+     *
+     * @param worst distance a candidate must beat to be kept
+     * @return the candidate, or null if no spur exists within the bound
+     */
+    private Candidate deviation(int[] prevPath, float[] rootDist, int si, float worst) {
+        SearchWorkspace ws = graph.acquire();
+        try {
+            return deviation(ws, prevPath, rootDist, si, worst);
+        } finally {
+            graph.release(ws);
+        }
+    }
+
+    private Candidate deviation(SearchWorkspace ws, int[] prevPath, float[] rootDist, int si, float worst) {
+        int             spurNode = prevPath[si];
+        boolean         sinkUsed = false;
+
+        ws.beginExclusions();
+        for (int[] confirmed : A) {
+            if (confirmed.length < si + 1 || !samePrefix(confirmed, prevPath, si + 1)) continue;
+            if (confirmed.length == si + 1) {
+                sinkUsed = true;
+            } else {
+                int e = graph.edgeIndex(spurNode, confirmed[si + 1]);
+                if (e >= 0) ws.excludeEdge(e);
+            }
+        }
+        for (int i = 0; i < si; i++) ws.excludeNode(prevPath[i]);
+
+        RouteQueryEvent event = RouteQueryEvent.start();
+        long s0 = ws.settled, p0 = ws.pushes;
+
+        // Slack for rounding: the spur search sums from zero, the candidate from the root
+        float maxSpur  = (worst - rootDist[si]) + worst * 1e-5f;
+        int[] spurPath = graph.spurPath(spurNode, target, heuristic, true, sinkUsed, maxSpur);
+
+        SETTLED.addAndGet(this, ws.settled - s0);
+        PUSHES.addAndGet(this, ws.pushes - p0);
+        if (event != null && event.shouldCommit())
+            event.complete(RouteQueryEvent.SPUR_SEARCH, graph.nodes[spurNode],
+                           target == CompiledGraph.ANY_EXIT ? null : graph.nodes[target],
+                           ws.settled - s0, ws.pushes - p0,
+                           spurPath == null ? Float.NaN : ws.dist(spurPath[spurPath.length - 1]), false);
+        if (spurPath == null) return null;
+
+        // Continue the root's running sum so distances match a sum over the full path
+        float dist = rootDist[si];
+        for (int i = 1; i < spurPath.length; i++)
+            dist += graph.weights[graph.edgeIndex(spurPath[i - 1], spurPath[i])];
+        return new Candidate(dist, prevPath, si, spurPath);
+    }
+
+    private static boolean samePrefix(int[] a, int[] b, int len) {
+        for (int i = 0; i < len; i++) if (a[i] != b[i]) return false;
+        return true;
+    }
+}
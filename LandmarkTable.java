@@ -0,0 +1,141 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Landmark distances for ALT (A*, landmarks, triangle inequality) searches
+ * over a {@link CompiledGraph}.
+ *
+ * <p>Distances to and from a small set of landmarks are precomputed once.
+ * For any landmark {@code L} the triangle inequality gives
+ * {@code d(v, t) >= d(L, t) - d(L, v)} and {@code d(v, t) >= d(v, L) - d(t, L)};
+ * the best of these over all landmarks guides the search.
+ *
+ * <p>Landmarks are chosen from the Exit nodes first, then from the periphery
+ * of each floor by farthest-point selection. The tables are computed on the
+ * full topology ignoring passability: blocking nodes can only lengthen
+ * shortest paths, so the bounds stay admissible and consistent however
+ * passability changes afterwards, and never need recomputing.
+ */
+final class LandmarkTable implements CompiledGraph.Heuristic {
+
+    static final int DEFAULT_LANDMARKS = 16;
+
+    // Differences of rounded float sums can overshoot the true distance by a few ULPs
+    private static final float SAFETY = 0.9999f;
+
+    private final int     count;       // number of landmarks
+    private final int[]   landmarks;   // landmark node ids
+    private final float[] from;        // from[v * count + l] = d(landmark l, v)
+    private final float[] to;          // to  [v * count + l] = d(v, landmark l)
+
+    LandmarkTable(CompiledGraph graph, int budget) {
+        int n = graph.nodeCount();
+        this.landmarks = selectLandmarks(graph, Math.max(1, Math.min(budget, n)));
+        this.count     = landmarks.length;
+        this.from      = new float[n * count];
+        this.to        = new float[n * count];
+
+        IntStream.range(0, count).parallel().forEach(l -> {
+            IndexedHeap heap = new IndexedHeap(n);
+            float[]     dist = new float[n];
+            distancesFrom(graph, landmarks[l], false, dist, heap);
+            for (int v = 0; v < n; v++) from[v * count + l] = dist[v];
+            distancesFrom(graph, landmarks[l], true, dist, heap);
+            for (int v = 0; v < n; v++) to[v * count + l] = dist[v];
+        });
+    }
+
+    int landmarkCount() { return count; }
+
+    @Override
+    public float lowerBound(int v, int target) {
+        int   vi = v * count, ti = target * count;
+        float best = 0f;
+        for (int l = 0; l < count; l++) {
+            float lv = from[vi + l], lt = from[ti + l];
+            if (lv != Float.MAX_VALUE && lt != Float.MAX_VALUE && lt - lv > best) best = lt - lv;
+            float vl = to[vi + l], tl = to[ti + l];
+            if (vl != Float.MAX_VALUE && tl != Float.MAX_VALUE && vl - tl > best) best = vl - tl;
+        }
+        return best * SAFETY;
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    /**
+     * Picks up to half the budget from the exits, then fills the rest round-robin
+     * over floors with the node on that floor farthest from every landmark so far.
+     * Nodes no landmark can reach count as farthest, so every component is covered.
+     */
+    private static int[] selectLandmarks(CompiledGraph graph, int budget) {
+        int n = graph.nodeCount();
+        List<Integer> chosen   = new ArrayList<>();
+        boolean[]     isChosen = new boolean[n];
+        float[]       nearest  = new float[n];     // min distance from any chosen landmark
+        float[]       scratch  = new float[n];
+        IndexedHeap   heap     = new IndexedHeap(n);
+        Arrays.fill(nearest, Float.MAX_VALUE);
+
+        List<Integer> exits = new ArrayList<>();
+        for (int v = 0; v < n; v++) if (graph.exit[v]) exits.add(v);
+        int exitBudget = Math.min(exits.size(), Math.max(1, budget / 2));
+
+        TreeSet<Integer> floorSet = new TreeSet<>();
+        for (int v = 0; v < n; v++) floorSet.add(graph.floors[v]);
+        Integer[] floors = floorSet.toArray(new Integer[0]);
+
+        int round = 0;
+        while (chosen.size() < budget) {
+            int best = -1;
+            if (chosen.size() < exitBudget) {
+                for (int v : exits)
+                    if (!isChosen[v] && (best < 0 || nearest[v] > nearest[best])) best = v;
+            } else {
+                // Try each floor once per pick before giving up
+                for (int tried = 0; tried < floors.length && best < 0; tried++, round++) {
+                    int floor = floors[round % floors.length];
+                    for (int v = 0; v < n; v++)
+                        if (!isChosen[v] && graph.floors[v] == floor
+                                && (best < 0 || nearest[v] > nearest[best])) best = v;
+                }
+            }
+            if (best < 0) break;
+
+            chosen.add(best);
+            isChosen[best] = true;
+            distancesFrom(graph, best, false, scratch, heap);
+            for (int v = 0; v < n; v++) nearest[v] = Math.min(nearest[v], scratch[v]);
+        }
+
+        int[] result = new int[chosen.size()];
+        for (int i = 0; i < result.length; i++) result[i] = chosen.get(i);
+        return result;
+    }
+
+    /** Plain Dijkstra ignoring passability, over forward or reverse edges. */
+    private static void distancesFrom(CompiledGraph graph, int root, boolean reverse,
+                                      float[] dist, IndexedHeap heap) {
+        int[]   off = reverse ? graph.reverseOffsets : graph.offsets;
+        int[]   adj = reverse ? graph.reverseSources : graph.targets;
+        float[] w   = reverse ? graph.reverseWeights : graph.weights;
+
+        Arrays.fill(dist, Float.MAX_VALUE);
+        heap.clear();
+        dist[root] = 0f;
+        heap.offer(root, 0f);
+        while (!heap.isEmpty()) {
+            int   u  = heap.poll();
+            float du = dist[u];
+            for (int e = off[u]; e < off[u + 1]; e++) {
+                int   v  = adj[e];
+                float nd = du + w[e];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    heap.offer(v, nd);
+                }
+            }
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Represents a node in a weighted graph.
@@ -9,25 +10,38 @@ import java.util.*;
  * rather than stored as a fixed flag. Use {@link #setPassable(boolean)}
  * to apply a manual override, or {@link #clearPassableOverride()} to
  * revert to threshold-based evaluation.
+ *
+ * <p>The environmental state (readings, thresholds and override) is one
+ * immutable value replaced on every update and published through a volatile
+ * field, so a reader on another thread always sees a consistent combination
+ * and never a half-applied update. Updates to one node should come from a
+ * single writer; see {@link EnvironmentWriter} for building-wide consistency.
+ * While an EnvironmentWriter manages a node, the node's own setters throw an
+ * {@link IllegalStateException}, so no update can bypass the writer's snapshots.
  */
 public class Node {
 
     private final String id;
     private final int    floor;
 
-    // Environmental conditions
-    private float temperature;
-    private float gasConcentration;
+    // Optional planar coordinates, used by geometric search heuristics (NaN = unknown)
+    private float x = Float.NaN;
+    private float y = Float.NaN;
+
+    // Environmental conditions, thresholds and override, replaced as a whole on every update
+    private volatile Environment env;
 
-    // Passability: manual override takes precedence when set
-    private Boolean passableOverride;            // null = use threshold logic
-    private float   temperatureThreshold;        // impassable above this temperature
-    private float   gasConcentrationThreshold;   // impassable above this gas concentration
+    // Writer that manages this node's environment, or null while the setters may be used directly
+    private volatile EnvironmentWriter writer;
 
     // Default thresholds
     public static final float DEFAULT_TEMPERATURE_THRESHOLD      = 60.0f;
     public static final float DEFAULT_GAS_CONCENTRATION_THRESHOLD = 0.5f;
 
+    // Observers notified when isPassable() flips; shared empty array until the first registration
+    private static final PassabilityListener[] NO_LISTENERS = new PassabilityListener[0];
+    private volatile PassabilityListener[] listeners = NO_LISTENERS;
+
     // Adjacency list: neighbouring node -> edge distance
     // package-private so PathCandidate helpers in the same package can read it directly
     final Map<Node, Float> neighbors = new HashMap<>();
@@ -41,6 +55,54 @@ public class Node {
         @Override public int compareTo(NE o) { return Float.compare(this.dist, o.dist); }
     }
 
+    // Immutable environmental state of a node
+    private static final class Environment {
+        final float   temperature;
+        final float   gasConcentration;
+        final Boolean passableOverride;            // null = use threshold logic
+        final float   temperatureThreshold;        // impassable above this temperature
+        final float   gasConcentrationThreshold;   // impassable above this gas concentration
+
+        Environment(float temperature, float gasConcentration, Boolean passableOverride,
+                    float temperatureThreshold, float gasConcentrationThreshold) {
+            this.temperature               = temperature;
+            this.gasConcentration          = gasConcentration;
+            this.passableOverride          = passableOverride;
+            this.temperatureThreshold      = temperatureThreshold;
+            this.gasConcentrationThreshold = gasConcentrationThreshold;
+        }
+
+        boolean passable() {
+            if (passableOverride != null) return passableOverride;
+            return temperature <= temperatureThreshold
+                    && gasConcentration <= gasConcentrationThreshold;
+        }
+
+        Environment withTemperature(float v) {
+            return new Environment(v, gasConcentration, passableOverride, temperatureThreshold, gasConcentrationThreshold);
+        }
+        Environment withGasConcentration(float v) {
+            return new Environment(temperature, v, passableOverride, temperatureThreshold, gasConcentrationThreshold);
+        }
+        Environment withOverride(Boolean v) {
+            return new Environment(temperature, gasConcentration, v, temperatureThreshold, gasConcentrationThreshold);
+        }
+        Environment withTemperatureThreshold(float v) {
+            return new Environment(temperature, gasConcentration, passableOverride, v, gasConcentrationThreshold);
+        }
+        Environment withGasConcentrationThreshold(float v) {
+            return new Environment(temperature, gasConcentration, passableOverride, temperatureThreshold, v);
+        }
+    }
+
+    /**
+     * Callback for changes of {@link #isPassable()}, whether caused by a manual
+     * override or by a temperature, gas or threshold update.
+     */
+    public interface PassabilityListener {
+        void passabilityChanged(Node node, boolean passable);
+    }
+
     // -------------------------
     //  Constructors
     // -------------------------
@@ -52,11 +114,8 @@ public class Node {
                 float temperatureThreshold, float gasConcentrationThreshold) {
         this.id = id;
         this.floor = floor;
-        this.temperature = temperature;
-        this.gasConcentration = gasConcentration;
-        this.temperatureThreshold = temperatureThreshold;
-        this.gasConcentrationThreshold = gasConcentrationThreshold;
-        this.passableOverride = null;
+        this.env = new Environment(temperature, gasConcentration, null,
+                                   temperatureThreshold, gasConcentrationThreshold);
     }
 
     /**
@@ -94,9 +153,7 @@ public class Node {
      * Manual override (if set) takes precedence over threshold evaluation.
      */
     public boolean isPassable() {
-        if (passableOverride != null) return passableOverride;
-        return temperature <= temperatureThreshold
-                && gasConcentration <= gasConcentrationThreshold;
+        return env.passable();
     }
 
     /**
@@ -104,19 +161,64 @@ public class Node {
      * Call {@link #clearPassableOverride()} to restore threshold-based behaviour.
      */
     public void setPassable(boolean passable) {
-        this.passableOverride = passable;
+        checkUnmanaged();
+        update(env.withOverride(passable));
     }
 
     /** Removes any manual override and restores threshold-based evaluation. */
     public void clearPassableOverride() {
-        this.passableOverride = null;
+        checkUnmanaged();
+        update(env.withOverride(null));
     }
 
     /** Returns true if a manual passability override is currently active. */
     public boolean hasPassableOverride() {
-        return passableOverride != null;
+        return env.passableOverride != null;
+    }
+
+    /** Registers a listener to be called whenever {@link #isPassable()} changes. */
+    public synchronized void addPassabilityListener(PassabilityListener listener) {
+        if (listener == null) throw new IllegalArgumentException("listener must not be null");
+        PassabilityListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /** Removes a previously registered listener. Does nothing if it is not registered. */
+    public synchronized void removePassabilityListener(PassabilityListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            PassabilityListener[] shrunk = new PassabilityListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, shrunk, 0, i);
+            System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+            listeners = shrunk.length == 0 ? NO_LISTENERS : shrunk;
+            return;
+        }
+    }
+
+    // -------------------------
+    //  Writer access
+    // -------------------------
+
+    /** Hands this node's environment to the writer; fails if another writer already manages it. */
+    synchronized void claim(EnvironmentWriter by) {
+        if (writer != null && writer != by)
+            throw new IllegalStateException("Node " + id + " is already managed by another EnvironmentWriter");
+        writer = by;
     }
 
+    /** Makes the setters usable again, if the node is still managed by {@code by}. */
+    synchronized void release(EnvironmentWriter by) {
+        if (writer == by) writer = null;
+    }
+
+    // Updates applied by the managing writer, which has already checked its own thread
+    void writeTemperature(float v)                { update(env.withTemperature(v)); }
+    void writeGasConcentration(float v)           { update(env.withGasConcentration(v)); }
+    void writeTemperatureThreshold(float v)       { update(env.withTemperatureThreshold(v)); }
+    void writeGasConcentrationThreshold(float v)  { update(env.withGasConcentrationThreshold(v)); }
+    void writeOverride(Boolean v)                 { update(env.withOverride(v)); }
+
     // -------------------------
     //  Core pathfinding methods
     // -------------------------
@@ -128,17 +230,23 @@ public class Node {
      * @return the nearest passable Exit, or empty if none is reachable
      */
     public Optional<Exit> findNearestExit() {
+        RouteQueryEvent event = RouteQueryEvent.start();
         PriorityQueue<NE>  pq   = new PriorityQueue<>();
         Map<Node, Float>   dist = new HashMap<>();
+        long settled = 0, pushes = 1;
         dist.put(this, 0f);
         pq.offer(new NE(0f, this));
 
         while (!pq.isEmpty()) {
             NE cur = pq.poll();
             if (cur.dist > dist.getOrDefault(cur.node, Float.MAX_VALUE)) continue;
+            settled++;
 
-            if (cur.node instanceof Exit && cur.node.isPassable())
+            if (cur.node instanceof Exit && cur.node.isPassable()) {
+                if (event != null && event.shouldCommit())
+                    event.complete(RouteQueryEvent.FIND_NEAREST_EXIT, this, null, settled, pushes, cur.dist, false);
                 return Optional.of((Exit) cur.node);
+            }
 
             for (Map.Entry<Node, Float> e : cur.node.neighbors.entrySet()) {
                 Node  nx = e.getKey();
@@ -147,9 +255,12 @@ public class Node {
                 if (nd < dist.getOrDefault(nx, Float.MAX_VALUE)) {
                     dist.put(nx, nd);
                     pq.offer(new NE(nd, nx));
+                    pushes++;
                 }
             }
         }
+        if (event != null && event.shouldCommit())
+            event.complete(RouteQueryEvent.FIND_NEAREST_EXIT, this, null, settled, pushes, Float.NaN, false);
         return Optional.empty();
     }
 
@@ -160,16 +271,19 @@ public class Node {
      * @return ordered node list from this node to target, or empty if unreachable
      */
     public Optional<List<Node>> shortestPathTo(Node target) {
+        RouteQueryEvent event = RouteQueryEvent.start();
         PriorityQueue<NE>  pq   = new PriorityQueue<>();
         Map<Node, Float>   dist = new HashMap<>();
         Map<Node, Node>    prev = new HashMap<>();
+        long settled = 0, pushes = 1;
         dist.put(this, 0f);
         pq.offer(new NE(0f, this));
 
         while (!pq.isEmpty()) {
             NE cur = pq.poll();
-            if (cur.node == target) break;
+            if (cur.node == target) { settled++; break; }
             if (cur.dist > dist.getOrDefault(cur.node, Float.MAX_VALUE)) continue;
+            settled++;
 
             for (Map.Entry<Node, Float> e : cur.node.neighbors.entrySet()) {
                 Node  nx = e.getKey();
@@ -179,10 +293,14 @@ public class Node {
                     dist.put(nx, nd);
                     prev.put(nx, cur.node);
                     pq.offer(new NE(nd, nx));
+                    pushes++;
                 }
             }
         }
 
+        if (event != null && event.shouldCommit())
+            event.complete(RouteQueryEvent.SHORTEST_PATH_TO, this, target, settled, pushes,
+                           dist.getOrDefault(target, Float.NaN), false);
         if (!dist.containsKey(target)) return Optional.empty();
         LinkedList<Node> path = new LinkedList<>();
         for (Node at = target; at != null; at = prev.get(at)) path.addFirst(at);
@@ -193,6 +311,11 @@ public class Node {
      * Finds the K shortest simple (loop-free) paths to the given target
      * using Yen's K-Shortest Paths algorithm.
      *
+     * <p>Runs on a transient {@link CompiledGraph} of the nodes reachable from
+     * here, so removed edges and nodes are tracked by int index rather than by
+     * string keys. Callers issuing many queries should compile once and use
+     * {@link #findKShortestPaths(Node, int, CompiledGraph)}.
+     *
      * <p>Time complexity: O(K * V * (E + V log V))
      *
      * @param target destination node
@@ -201,110 +324,115 @@ public class Node {
      */
     public List<PathCandidate> findKShortestPaths(Node target, int k) {
         if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        CompiledGraph reachable = CompiledGraph.of(Collections.singleton(this));
+        if (reachable.indexOf(target) < 0) return new ArrayList<>();
+        return reachable.findKShortestPaths(this, target, k);
+    }
 
-        List<PathCandidate>          A = new ArrayList<>();
-        PriorityQueue<PathCandidate> B = new PriorityQueue<>();
-
-        shortestPathTo(target).ifPresent(p -> A.add(new PathCandidate(pathDistance(p), p)));
-        if (A.isEmpty()) return A;
-
-        for (int ki = 1; ki < k; ki++) {
-            PathCandidate prevPath = A.get(ki - 1);
-
-            for (int si = 0; si < prevPath.nodes.size() - 1; si++) {
-                Node       spurNode = prevPath.nodes.get(si);
-                // Defensive copy — never keep a subList view across iterations
-                List<Node> rootPath = new ArrayList<>(prevPath.nodes.subList(0, si + 1));
-
-                Set<String> removedEdges = new HashSet<>();
-                for (PathCandidate confirmed : A)
-                    if (confirmed.nodes.size() > si
-                            && confirmed.nodes.subList(0, si + 1).equals(rootPath))
-                        removedEdges.add(edgeKey(spurNode, confirmed.nodes.get(si + 1)));
-
-                Set<Node> removedNodes = new HashSet<>(rootPath.subList(0, rootPath.size() - 1));
-
-                Optional<List<Node>> spurOpt =
-                        dijkstraWithExclusions(spurNode, target, removedEdges, removedNodes);
-                if (!spurOpt.isPresent()) continue;
-
-                List<Node> spurPath   = spurOpt.get();
-                List<Node> totalNodes = new ArrayList<>(rootPath);
-                totalNodes.addAll(spurPath.subList(1, spurPath.size()));
+    /**
+     * Finds the K shortest simple paths from this node to any passable Exit.
+     * All passable exits act as one virtual target, so a single run of Yen's
+     * algorithm yields the global top K across every exit.
+     *
+     * @param k maximum number of paths to return (must be >= 1)
+     * @return up to K PathCandidate objects in ascending distance order
+     */
+    public List<PathCandidate> findKShortestPathsToExits(int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        return CompiledGraph.of(Collections.singleton(this)).findKShortestPathsToExits(this, k);
+    }
 
-                PathCandidate candidate = new PathCandidate(pathDistance(totalNodes), totalNodes);
-                boolean dup = false;
-                for (PathCandidate q : B) if (q.nodes.equals(candidate.nodes)) { dup = true; break; }
-                if (!dup) B.add(candidate);
-            }
+    /**
+     * Lazy form of {@link #findKShortestPaths(Node, int)}: simple paths to the
+     * target in ascending distance order, computed only as the stream is
+     * consumed. Use {@code limit}, {@code filter} and {@code findFirst} to stop
+     * as soon as a path meets the caller's constraints.
+     *
+     * @param target destination node
+     * @return an ordered stream of paths, empty if the target is unreachable
+     */
+    public Stream<PathCandidate> shortestPathsTo(Node target) {
+        CompiledGraph reachable = CompiledGraph.of(Collections.singleton(this));
+        if (reachable.indexOf(target) < 0) return Stream.empty();
+        return reachable.iterateShortestPaths(this, target).stream();
+    }
 
-            if (B.isEmpty()) break;
-            A.add(B.poll());
-        }
-        return A;
+    /** Lazy form of {@link #findKShortestPathsToExits(int)}. */
+    public Stream<PathCandidate> shortestPathsToExits() {
+        return CompiledGraph.of(Collections.singleton(this)).iterateShortestPathsToExits(this).stream();
     }
 
     // -------------------------
-    //  Private helpers
+    //  Snapshot-backed variants
     // -------------------------
 
     /**
-     * Dijkstra with specific edges and nodes temporarily excluded.
-     * Used internally by {@link #findKShortestPaths}.
+     * Same as {@link #findNearestExit()}, but runs on a compiled CSR snapshot.
+     * This node must be part of the snapshot.
      */
-    private Optional<List<Node>> dijkstraWithExclusions(
-            Node source, Node target,
-            Set<String> removedEdges, Set<Node> removedNodes) {
-
-        PriorityQueue<NE> pq   = new PriorityQueue<>();
-        Map<Node, Float>  dist = new HashMap<>();
-        Map<Node, Node>   prev = new HashMap<>();
-        dist.put(source, 0f);
-        pq.offer(new NE(0f, source));
-
-        while (!pq.isEmpty()) {
-            NE cur = pq.poll();
-            if (cur.node == target) break;
-            if (cur.dist > dist.getOrDefault(cur.node, Float.MAX_VALUE)) continue;
+    public Optional<Exit> findNearestExit(CompiledGraph graph) {
+        return graph.findNearestExit(this);
+    }
 
-            for (Map.Entry<Node, Float> e : cur.node.neighbors.entrySet()) {
-                Node nx = e.getKey();
-                if (removedNodes.contains(nx))               continue;
-                if (removedEdges.contains(edgeKey(cur.node, nx))) continue;
-                if (!nx.isPassable() && nx != target)        continue;
+    /**
+     * Same as {@link #shortestPathTo(Node)}, but runs on a compiled CSR snapshot.
+     * Both nodes must be part of the snapshot.
+     */
+    public Optional<List<Node>> shortestPathTo(Node target, CompiledGraph graph) {
+        return graph.shortestPath(this, target);
+    }
 
-                float nd = cur.dist + e.getValue();
-                if (nd < dist.getOrDefault(nx, Float.MAX_VALUE)) {
-                    dist.put(nx, nd);
-                    prev.put(nx, cur.node);
-                    pq.offer(new NE(nd, nx));
-                }
-            }
-        }
+    /**
+     * Same as {@link #shortestPathTo(Node, CompiledGraph)} with an explicit search
+     * strategy, e.g. {@link CompiledGraph.Algorithm#BIDIRECTIONAL} for long
+     * point-to-point queries.
+     */
+    public Optional<List<Node>> shortestPathTo(Node target, CompiledGraph graph,
+                                               CompiledGraph.Algorithm algorithm) {
+        return graph.shortestPath(this, target, algorithm);
+    }
 
-        if (!dist.containsKey(target)) return Optional.empty();
-        LinkedList<Node> path = new LinkedList<>();
-        for (Node at = target; at != null; at = prev.get(at)) path.addFirst(at);
-        return Optional.of(path);
+    /**
+     * Same as {@link #findKShortestPaths(Node, int)}, but runs on a compiled CSR snapshot.
+     * Both nodes must be part of the snapshot.
+     */
+    public List<PathCandidate> findKShortestPaths(Node target, int k, CompiledGraph graph) {
+        return graph.findKShortestPaths(this, target, k);
     }
 
-    /** Sums edge weights along an ordered path. Returns MAX_VALUE if any edge is missing. */
-    private float pathDistance(List<Node> path) {
-        float total = 0f;
-        for (int i = 0; i < path.size() - 1; i++) {
-            Float d = path.get(i).neighbors.get(path.get(i + 1));
-            if (d == null) return Float.MAX_VALUE;
-            total += d;
-        }
-        return total;
+    /**
+     * Same as {@link #findKShortestPathsToExits(int)}, but runs on a compiled CSR snapshot.
+     * This node must be part of the snapshot.
+     */
+    public List<PathCandidate> findKShortestPathsToExits(int k, CompiledGraph graph) {
+        return graph.findKShortestPathsToExits(this, k);
     }
 
     /**
-     * Stable directed-edge key using node IDs.
-     * Using IDs instead of identityHashCode avoids hash collisions.
+     * Same as {@link #findKShortestPaths(Node, int, CompiledGraph)} with an explicit
+     * strategy for the spur searches, e.g. {@link CompiledGraph.Algorithm#ASTAR}.
      */
-    private String edgeKey(Node from, Node to) {
-        return from.id + "->" + to.id;
+    public List<PathCandidate> findKShortestPaths(Node target, int k, CompiledGraph graph,
+                                                  CompiledGraph.Algorithm algorithm) {
+        return graph.findKShortestPaths(this, target, k, algorithm);
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    private void checkUnmanaged() {
+        if (writer != null)
+            throw new IllegalStateException("Node " + id + " is managed by an EnvironmentWriter; update it there");
+    }
+
+    /** Publishes a new environment and notifies listeners if isPassable() flipped. */
+    private void update(Environment next) {
+        boolean was = env.passable();
+        env = next;
+        boolean now = next.passable();
+        if (now == was) return;
+        for (PassabilityListener l : listeners) l.passabilityChanged(this, now);
     }
 
     // -------------------------
@@ -314,26 +442,42 @@ public class Node {
     public String getId()    { return id; }
     public int    getFloor() { return floor; }
 
-    public float getTemperature()              { return temperature; }
-    public void  setTemperature(float v)       { this.temperature = v; }
+    /**
+     * Sets this node's planar position, in any unit consistent across the building.
+     * Coordinates are optional; they only enable geometric search heuristics.
+     */
+    public void setCoordinates(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /** Returns true if planar coordinates have been set. */
+    public boolean hasCoordinates() { return !Float.isNaN(x) && !Float.isNaN(y); }
+
+    public float getX() { return x; }
+    public float getY() { return y; }
+
+    public float getTemperature()              { return env.temperature; }
+    public void  setTemperature(float v)       { checkUnmanaged(); update(env.withTemperature(v)); }
 
-    public float getGasConcentration()         { return gasConcentration; }
-    public void  setGasConcentration(float v)  { this.gasConcentration = v; }
+    public float getGasConcentration()         { return env.gasConcentration; }
+    public void  setGasConcentration(float v)  { checkUnmanaged(); update(env.withGasConcentration(v)); }
 
-    public float getTemperatureThreshold()     { return temperatureThreshold; }
-    public void  setTemperatureThreshold(float v) { this.temperatureThreshold = v; }
+    public float getTemperatureThreshold()     { return env.temperatureThreshold; }
+    public void  setTemperatureThreshold(float v) { checkUnmanaged(); update(env.withTemperatureThreshold(v)); }
 
-    public float getGasConcentrationThreshold()          { return gasConcentrationThreshold; }
-    public void  setGasConcentrationThreshold(float v)   { this.gasConcentrationThreshold = v; }
+    public float getGasConcentrationThreshold()          { return env.gasConcentrationThreshold; }
+    public void  setGasConcentrationThreshold(float v)   { checkUnmanaged(); update(env.withGasConcentrationThreshold(v)); }
 
     public Map<Node, Float> getNeighbors() { return Collections.unmodifiableMap(neighbors); }
 
     @Override
     public String toString() {
-        String src = passableOverride != null ? "override" : "threshold";
+        Environment e   = env;
+        String      src = e.passableOverride != null ? "override" : "threshold";
         return String.format("Node{id='%s', floor=%d, passable=%b (%s), temp=%.1f/%.1f, gas=%.2f/%.2f}",
-                id, floor, isPassable(), src,
-                temperature, temperatureThreshold,
-                gasConcentration, gasConcentrationThreshold);
+                id, floor, e.passable(), src,
+                e.temperature, e.temperatureThreshold,
+                e.gasConcentration, e.gasConcentrationThreshold);
     }
 }
@@ -0,0 +1,76 @@
+/**
+ * Immutable, versioned passability state of every node of a {@link CompiledGraph}.
+ *
+ * <p>One bit per node id, stored in fixed-size chunks. A new version copies
+ * only the chunks that contain a changed node and shares the rest with its
+ * predecessor, so publishing a handful of sensor updates costs a few hundred
+ * bytes however large the building is. Readers never lock: a search pins one
+ * snapshot through {@link CompiledGraph#at(PassabilitySnapshot)} and sees the
+ * same state from start to finish while newer versions are published.
+ */
+public final class PassabilitySnapshot {
+
+    private static final int CHUNK_SHIFT = 12;                       // 4096 nodes per chunk
+    private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - 6);
+
+    private final long[][] chunks;
+    private final long     version;
+
+    private PassabilitySnapshot(long[][] chunks, long version) {
+        this.chunks  = chunks;
+        this.version = version;
+    }
+
+    /** Version 0: the current passability of every node in the snapshot. */
+    static PassabilitySnapshot capture(CompiledGraph graph) {
+        return capture(graph, 0);
+    }
+
+    /** Reads the current passability of every node into a new snapshot with the given version. */
+    static PassabilitySnapshot capture(CompiledGraph graph, long version) {
+        int      n      = graph.nodeCount();
+        long[][] chunks = new long[(n + (1 << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT][CHUNK_WORDS];
+        for (int v = 0; v < n; v++)
+            if (graph.nodes[v].isPassable()) chunks[v >>> CHUNK_SHIFT][(v >>> 6) & (CHUNK_WORDS - 1)] |= 1L << v;
+        return new PassabilitySnapshot(chunks, version);
+    }
+
+    /** Monotonically increasing publication number. */
+    public long version() { return version; }
+
+    /** Passability of node id v in this version. */
+    public boolean passable(int v) {
+        return (chunks[v >>> CHUNK_SHIFT][(v >>> 6) & (CHUNK_WORDS - 1)] & 1L << v) != 0;
+    }
+
+    /**
+     * Writes the ids whose passability differs in {@code other} to {@code out},
+     * which must hold one entry per node, and returns their count. Chunks the
+     * two versions share are skipped without being read.
+     */
+    int diff(PassabilitySnapshot other, int[] out) {
+        int count = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] == other.chunks[c]) continue;
+            for (int w = 0; w < CHUNK_WORDS; w++) {
+                for (long bits = chunks[c][w] ^ other.chunks[c][w]; bits != 0; bits &= bits - 1)
+                    out[count++] = c << CHUNK_SHIFT | w << 6 | Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The next version, with the passability of the first {@code count} ids
+     * in {@code flipped} inverted. Chunks without a flipped id are shared.
+     */
+    PassabilitySnapshot flip(int[] flipped, int count) {
+        long[][] next = chunks.clone();
+        for (int i = 0; i < count; i++) {
+            int v = flipped[i], c = v >>> CHUNK_SHIFT;
+            if (next[c] == chunks[c]) next[c] = chunks[c].clone();   // copy on first write
+            next[c][(v >>> 6) & (CHUNK_WORDS - 1)] ^= 1L << v;
+        }
+        return new PassabilitySnapshot(next, version + 1);
+    }
+}
@@ -5,12 +5,18 @@ import java.util.stream.Collectors;
  * Represents a candidate path produced by shortest-path algorithms.
  * Stores the total edge-weight distance and the ordered sequence of nodes.
  * Implements Comparable so it can be used directly in a PriorityQueue.
+ *
+ * <p>Paths produced by a {@link CompiledGraph} are stored compactly as an
+ * {@code int[]} of node indices; {@link #nodes} is then a read-only view that
+ * resolves indices against the snapshot's node table on access.
  */
 public class PathCandidate implements Comparable<PathCandidate> {
 
     public final float      totalDistance;
     public final List<Node> nodes;
 
+    private int hash;   // cached hashCode, 0 until first computed
+
     /**
      * @param totalDistance sum of all edge weights along the path
      * @param nodes         ordered list of nodes from source to target
@@ -20,15 +26,56 @@ public class PathCandidate implements Comparable<PathCandidate> {
         this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
     }
 
+    /**
+     * Compact form over a snapshot's node table. The path array is kept, not
+     * copied, and must not be modified afterwards.
+     *
+     * @param path  node indices from source to target
+     * @param table node table the indices refer to
+     */
+    PathCandidate(float totalDistance, int[] path, Node[] table) {
+        this.totalDistance = totalDistance;
+        this.nodes = new IndexedNodes(path, table);
+    }
+
     /** Shorter paths sort first. */
     @Override
     public int compareTo(PathCandidate other) {
         return Float.compare(this.totalDistance, other.totalDistance);
     }
 
+    /** Two candidates are equal when they visit the same nodes in the same order. */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PathCandidate)) return false;
+        PathCandidate other = (PathCandidate) o;
+        if (nodes instanceof IndexedNodes && other.nodes instanceof IndexedNodes) {
+            IndexedNodes a = (IndexedNodes) nodes, b = (IndexedNodes) other.nodes;
+            if (a.table == b.table) return Arrays.equals(a.path, b.path);
+        }
+        return nodes.equals(other.nodes);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) hash = h = nodes.hashCode();
+        return h;
+    }
+
     @Override
     public String toString() {
         return String.format("%.1f  [ %s ]", totalDistance,
                 nodes.stream().map(Node::getId).collect(Collectors.joining(" -> ")));
     }
+
+    // Read-only node list backed by an index path and a node table
+    private static final class IndexedNodes extends AbstractList<Node> implements RandomAccess {
+        final int[]  path;
+        final Node[] table;
+        IndexedNodes(int[] path, Node[] table) { this.path = path; this.table = table; }
+        @Override public Node get(int i) { return table[path[i]]; }
+        @Override public int size()      { return path.length; }
+    }
 }
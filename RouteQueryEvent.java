@@ -0,0 +1,88 @@
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder event for one search call of the routing core: a
+ * nearest-exit search, a point-to-point search, a K-shortest-paths query or
+ * one of its spur searches, or a call answered from a cache.
+ *
+ * <p>Call sites take the event from {@link #start()} before searching, and
+ * call {@link #complete} only if it is non-null and {@link #shouldCommit()}
+ * says a recording wants it. Without a recording that is one flag check per
+ * call: no event is allocated, node ids are not looked up and no distance is
+ * summed. Spur searches are frequent, so a threshold is the usual way to keep
+ * recordings small:
+ * <pre>
+ *   java -XX:StartFlightRecording=filename=routing.jfr RoutingServer
+ *   jfr print --events PathVisualizer.RouteQuery routing.jfr
+ * </pre>
+ * A settings file can raise the threshold of {@code PathVisualizer.RouteQuery},
+ * e.g. to 1 ms, so only slow searches are recorded.
+ */
+@Name("PathVisualizer.RouteQuery")
+@Label("Route Query")
+@Category({ "Path Visualizer", "Routing" })
+@Description("One search call of the routing core")
+@StackTrace(false)
+final class RouteQueryEvent extends Event {
+
+    // Values of the kind field, named after the API call
+    static final String FIND_NEAREST_EXIT     = "findNearestExit";
+    static final String SHORTEST_PATH_TO      = "shortestPathTo";
+    static final String FIND_K_SHORTEST_PATHS = "findKShortestPaths";
+    static final String SPUR_SEARCH           = "spurSearch";
+
+    // Target of a search towards whichever exit is nearest
+    private static final String ANY_EXIT = "any-exit";
+
+    private static final EventType TYPE = EventType.getEventType(RouteQueryEvent.class);
+
+    @Label("Kind")
+    @Description("findNearestExit, shortestPathTo, findKShortestPaths or spurSearch")
+    String kind;
+
+    @Label("Source")
+    String source;
+
+    @Label("Target")
+    @Description("Target node id, or any-exit")
+    String target;
+
+    @Label("Nodes Settled")
+    long nodesSettled;
+
+    @Label("Heap Pushes")
+    long heapPushes;
+
+    @Label("Distance")
+    @Description("Length of the shortest route found, NaN if none")
+    float distance;
+
+    @Label("Cached")
+    @Description("Answered from a cache or precomputed table without searching")
+    boolean cached;
+
+    /** A begun event if any recording has this event enabled, otherwise null. */
+    static RouteQueryEvent start() {
+        if (!TYPE.isEnabled()) return null;
+        RouteQueryEvent event = new RouteQueryEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Fills in the fields and commits. Call only when {@link #shouldCommit()}.
+     *
+     * @param target the target node, or null for a search towards any exit
+     */
+    void complete(String kind, Node source, Node target, long settled, long pushes,
+                  float distance, boolean cached) {
+        this.kind         = kind;
+        this.source       = source.getId();
+        this.target       = target == null ? ANY_EXIT : target.getId();
+        this.nodesSettled = settled;
+        this.heapPushes   = pushes;
+        this.distance     = distance;
+        this.cached       = cached;
+        commit();
+    }
+}
@@ -0,0 +1,264 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Self-contained micro-benchmark harness for the pathfinding core, in the
+ * spirit of JMH: warmup iterations, timed measurement iterations, a
+ * black-hole sink and per-query allocation, with no dependency beyond the JDK.
+ *
+ * <p>Benchmarks, each run against the snapshot overloads of {@link Node}:
+ * <ul>
+ *   <li>{@code nearestExit}  - {@link Node#findNearestExit(CompiledGraph)}</li>
+ *   <li>{@code shortestPath} - {@link Node#shortestPathTo(Node, CompiledGraph)}</li>
+ *   <li>{@code kShortest}    - {@link Node#findKShortestPaths(Node, int, CompiledGraph)}, once per K</li>
+ * </ul>
+ * {@code shortestPath} uses uniformly random source/target pairs, so its cost
+ * grows with the building. {@code kShortest} targets lie a fixed random walk
+ * away from their source, so the K routes have about the same length at every
+ * size and the numbers show how well spur searches stay local.
+ *
+ * <p>For every graph size and benchmark it reports:
+ * <ul>
+ *   <li><b>cold</b> - one query on a freshly compiled snapshot, before any warmup
+ *       on it: includes workspace allocation and lazily built search state.</li>
+ *   <li><b>warm</b> - mean time per query over the measurement iterations, with
+ *       the half-width of a 99.9% confidence interval as JMH prints it.</li>
+ *   <li><b>alloc</b> - bytes allocated per warm query by the benchmark thread.</li>
+ * </ul>
+ *
+ * <p>Buildings come from {@link BuildingGenerator} and, like the queries, are
+ * derived from a fixed seed, so two runs on the same machine measure the same
+ * work. Options are {@code key=value} arguments:
+ * <pre>
+ *   java -Xmx8g RoutingBenchmark                                  (all defaults)
+ *   java RoutingBenchmark sizes=300,100000 k=1,3 time=500 format=csv
+ *
+ *   sizes       approximate node counts             default 300,10000,100000,1000000
+ *   k           K values for kShortest              default 1,3,10,50
+ *   warmup      warmup iterations                   default 3
+ *   iterations  measurement iterations              default 5
+ *   time        milliseconds per iteration          default 1000
+ *   queries     distinct source/target pairs        default 256
+ *   walk        random-walk steps to kShortest targets  default 32
+ *   seed        graph and query seed                default 42
+ *   format      table or csv                        default table
+ * </pre>
+ */
+public final class RoutingBenchmark {
+
+    // Student's t quantiles for a two-sided 99.9% interval, by degrees of freedom 1..10
+    private static final double[] T_999 = {636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587};
+
+    private static volatile int sink;   // results are folded in here so no query is dead code
+
+    private final int[]   sizes;
+    private final int[]   ks;
+    private final int     warmup;
+    private final int     iterations;
+    private final long    iterationNanos;
+    private final int     queryCount;
+    private final int     walk;
+    private final long    seed;
+    private final boolean csv;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private RoutingBenchmark(Map<String, String> options) {
+        this.sizes          = ints(options.getOrDefault("sizes", "300,10000,100000,1000000"));
+        this.ks             = ints(options.getOrDefault("k", "1,3,10,50"));
+        this.warmup         = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        this.iterations     = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        this.iterationNanos = Long.parseLong(options.getOrDefault("time", "1000")) * 1_000_000L;
+        this.queryCount     = Integer.parseInt(options.getOrDefault("queries", "256"));
+        this.walk           = Integer.parseInt(options.getOrDefault("walk", "32"));
+        this.seed           = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.csv            = options.getOrDefault("format", "table").equals("csv");
+        if (iterations < 1 || warmup < 0 || iterationNanos <= 0 || queryCount < 1)
+            throw new IllegalArgumentException("iterations, time and queries must be positive, warmup non-negative");
+    }
+
+    // -------------------------
+    //  Benchmarks
+    // -------------------------
+
+    /** One benchmarked call: query i of the workload against the given snapshot. */
+    private interface Op {
+        Object run(CompiledGraph graph, Workload w, int i);
+    }
+
+    /** A graph and its fixed queries: targets anywhere, nearTargets a random walk from the source. */
+    private static final class Workload {
+        final CompiledGraph graph;
+        final Node[]        sources;
+        final Node[]        targets;
+        final Node[]        nearTargets;
+
+        Workload(CompiledGraph graph, Node[] sources, Node[] targets, Node[] nearTargets) {
+            this.graph       = graph;
+            this.sources     = sources;
+            this.targets     = targets;
+            this.nearTargets = nearTargets;
+        }
+    }
+
+    private void run() {
+        RouteQueryEvent.start();   // registers the JFR event type once, outside every cold measurement
+        header();
+        for (int size : sizes) {
+            Workload      w     = workload(size);
+            CompiledGraph graph = w.graph;
+            String        n     = String.valueOf(graph.nodeCount());
+
+            bench("nearestExit",  n, "-", w, graph, (g, wl, i) -> wl.sources[i].findNearestExit(g));
+            bench("shortestPath", n, "-", w, graph, (g, wl, i) -> wl.sources[i].shortestPathTo(wl.targets[i], g));
+            for (int k : ks)
+                bench("kShortest", n, String.valueOf(k), w, graph,
+                      (g, wl, i) -> wl.sources[i].findKShortestPaths(wl.nearTargets[i], k, g));
+        }
+    }
+
+    private void bench(String name, String nodes, String k, Workload w, CompiledGraph graph, Op op) {
+        // Cold: first query on a snapshot nobody has searched yet
+        CompiledGraph fresh = w.graph.recompile();
+        long t0 = System.nanoTime();
+        consume(op.run(fresh, w, 0));
+        double coldMs = (System.nanoTime() - t0) / 1e6;
+
+        for (int it = 0; it < warmup; it++) iteration(op, w, graph);
+        double[] nsPerOp    = new double[iterations];
+        double[] bytesPerOp = new double[iterations];
+        for (int it = 0; it < iterations; it++) {
+            double[] r = iteration(op, w, graph);
+            nsPerOp[it]    = r[0];
+            bytesPerOp[it] = r[1];
+        }
+        report(name, nodes, k, coldMs, nsPerOp, bytesPerOp);
+    }
+
+    /** Runs queries for one iteration's time budget; returns {ns per op, bytes per op}. */
+    private double[] iteration(Op op, Workload w, CompiledGraph graph) {
+        long ops    = 0;
+        long bytes0 = allocatedBytes();
+        long start  = System.nanoTime();
+        long now;
+        do {
+            consume(op.run(graph, w, (int) (ops % queryCount)));
+            ops++;
+            now = System.nanoTime();
+        } while (now - start < iterationNanos);
+        long bytes = allocatedBytes() - bytes0;
+        return new double[] { (now - start) / (double) ops, bytes0 < 0 ? Double.NaN : bytes / (double) ops };
+    }
+
+    // -------------------------
+    //  Workloads
+    // -------------------------
+
+    /**
+     * A {@link BuildingGenerator} building of about {@code size} nodes: four
+     * floors of corridors with rooms, stairwells and ground-floor exits, and
+     * one fire site per 20,000 nodes.
+     */
+    private Workload workload(int size) {
+        Random        rnd   = new Random(seed ^ size);
+        CompiledGraph graph = new BuildingGenerator()
+                .size(size)
+                .hazards(Math.max(1, size / 20_000), 4)
+                .seed(seed ^ size)
+                .generate().compiled;
+
+        List<Node> passable = new ArrayList<>();
+        for (int v = 0; v < graph.nodeCount(); v++) if (graph.node(v).isPassable()) passable.add(graph.node(v));
+        Node[] sources     = new Node[queryCount];
+        Node[] targets     = new Node[queryCount];
+        Node[] nearTargets = new Node[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            sources[i] = passable.get(rnd.nextInt(passable.size()));
+            targets[i] = passable.get(rnd.nextInt(passable.size()));
+
+            // Walk the CSR rather than the neighbour maps, whose order differs from run to run
+            int at = graph.indexOf(sources[i]);
+            for (int step = 0; step < walk; step++)
+                at = graph.targets[graph.offsets[at] + rnd.nextInt(graph.offsets[at + 1] - graph.offsets[at])];
+            nearTargets[i] = graph.node(at);
+        }
+        return new Workload(graph, sources, targets, nearTargets);
+    }
+
+    // -------------------------
+    //  Reporting
+    // -------------------------
+
+    private void header() {
+        if (csv) {
+            System.out.println("benchmark,nodes,k,cold_ms,warm_us_per_op,error_us,alloc_bytes_per_op");
+            return;
+        }
+        System.out.printf("# JVM %s %s, %d cpu(s), max heap %d MB%n",
+                          System.getProperty("java.vm.name"), System.getProperty("java.version"),
+                          Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("# warmup %d x %d ms, measurement %d x %d ms, %d queries, seed %d%n",
+                          warmup, iterationNanos / 1_000_000, iterations, iterationNanos / 1_000_000, queryCount, seed);
+        System.out.printf("%-14s %9s %4s %10s %14s %11s %13s%n",
+                          "Benchmark", "Nodes", "K", "Cold(ms)", "Warm(us/op)", "Error(us)", "Alloc(B/op)");
+    }
+
+    private void report(String name, String nodes, String k, double coldMs, double[] nsPerOp, double[] bytesPerOp) {
+        double mean  = mean(nsPerOp) / 1e3;
+        double error = iterations < 2 ? Double.NaN
+                     : T_999[Math.min(iterations - 1, T_999.length) - 1] * stdev(nsPerOp) / 1e3 / Math.sqrt(iterations);
+        double alloc = mean(bytesPerOp);
+        if (csv) {
+            System.out.printf(Locale.ROOT, "%s,%s,%s,%.3f,%.3f,%.3f,%.0f%n", name, nodes, k, coldMs, mean, error, alloc);
+        } else {
+            System.out.printf(Locale.ROOT, "%-14s %9s %4s %10.3f %14.3f %11s %13s%n", name, nodes, k, coldMs, mean,
+                              Double.isNaN(error) ? "" : String.format(Locale.ROOT, "%.3f", error),
+                              Double.isNaN(alloc) ? "n/a" : String.format(Locale.ROOT, "%.0f", alloc));
+        }
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    /** Bytes allocated so far by this thread, or -1 if the JVM cannot tell. */
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void consume(Object result) {
+        sink ^= System.identityHashCode(result);
+    }
+
+    private static double mean(double[] xs) {
+        double sum = 0;
+        for (double x : xs) sum += x;
+        return sum / xs.length;
+    }
+
+    private static double stdev(double[] xs) {
+        double m = mean(xs), sum = 0;
+        for (double x : xs) sum += (x - m) * (x - m);
+        return Math.sqrt(sum / (xs.length - 1));
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // -------------------------
+    //  Entry point
+    // -------------------------
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value, got " + arg);
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new RoutingBenchmark(options).run();
+    }
+}
@@ -0,0 +1,271 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless routing facade over a {@link Graph}.
+ *
+ * <p>Owns everything a front end needs to answer evacuation queries: the
+ * compiled snapshot, the {@link EnvironmentWriter} sensor updates go through,
+ * the set of exits, an {@link ExitDistanceField}, a cache of recent exit
+ * routes, and the pool used for parallel spur searches. It depends on no AWT
+ * or Swing class, so servers can start it without a display; {@link GraphGUI}
+ * is one client.
+ *
+ * <p>Every query pins the writer's latest published {@link PassabilitySnapshot}
+ * once and answers from it alone, so a search never sees half of a sensor
+ * update. Updates become visible when the writer publishes them. The
+ * writer repairs the exit field as it publishes and hands readers a frozen
+ * copy of it per version, so field lookups take no lock; cached routes are
+ * kept per version. After adding nodes or edges, call
+ * {@link #recompile()}, which replaces the writer. Queries may be issued from
+ * several threads. Call {@link #close()} to hand the nodes back and release
+ * the pool.
+ */
+public class RoutingEngine implements AutoCloseable {
+
+    // Exit routes kept per published version, least recently used evicted first
+    private static final int CACHE_LIMIT = 1024;
+
+    private final Graph graph;
+
+    // Snapshot state, replaced as a whole by recompile()
+    private volatile State state;
+
+    // Pool for parallel spur searches; null on a single core
+    private final ForkJoinPool pool;
+
+    /** Everything derived from one compilation of the graph. */
+    private static final class State {
+        final CompiledGraph     compiled;
+        final EnvironmentWriter writer;
+        final ExitDistanceField field;     // writer thread only, advanced as versions are published
+        final List<Exit>        exits;
+        final int[]             exitIds;
+
+        // Frozen copy of the field at the latest published version
+        private volatile ExitDistanceField published;
+
+        // Top-K exit routes of one published version
+        private volatile RouteCache routes;
+
+        State(CompiledGraph compiled) {
+            this.compiled  = compiled;
+            this.writer    = new EnvironmentWriter(compiled);
+            this.field     = new ExitDistanceField(writer.view());
+            this.published = field.freeze();
+            this.routes    = new RouteCache(writer.current());
+            writer.addPublishListener(snapshot -> {
+                field.advanceTo(snapshot);
+                published = field.freeze();
+            });
+
+            List<Exit> found = new ArrayList<>();
+            for (int v = 0; v < compiled.nodeCount(); v++)
+                if (compiled.node(v) instanceof Exit) found.add((Exit) compiled.node(v));
+            this.exits   = Collections.unmodifiableList(found);
+            this.exitIds = new int[found.size()];
+            for (int i = 0; i < exitIds.length; i++) exitIds[i] = compiled.indexOf(found.get(i));
+        }
+
+        /** The route cache for the given version, or null if a newer version's cache has replaced it. */
+        RouteCache routesFor(PassabilitySnapshot snapshot) {
+            RouteCache c = routes;
+            if (c.snapshot == snapshot) return c;
+            synchronized (this) {
+                if (routes.snapshot.version() < snapshot.version()) routes = new RouteCache(snapshot);
+                return routes.snapshot == snapshot ? routes : null;
+            }
+        }
+
+        boolean hasPassableExit(PassabilitySnapshot snapshot) {
+            for (int v : exitIds) if (snapshot.passable(v)) return true;
+            return false;
+        }
+    }
+
+    /**
+     * Top-K exit routes by (source id, k), valid for exactly one published
+     * version. Least recently used entries are evicted past {@link #CACHE_LIMIT}.
+     */
+    private static final class RouteCache {
+        final PassabilitySnapshot snapshot;
+
+        // Access-ordered, so get() also updates recency; guarded by this
+        private final LinkedHashMap<Long, List<PathCandidate>> routes =
+                new LinkedHashMap<Long, List<PathCandidate>>(64, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, List<PathCandidate>> eldest) {
+                        return size() > CACHE_LIMIT;
+                    }
+                };
+
+        RouteCache(PassabilitySnapshot snapshot) { this.snapshot = snapshot; }
+
+        synchronized List<PathCandidate> get(long key) { return routes.get(key); }
+
+        synchronized void put(long key, List<PathCandidate> value) { routes.put(key, value); }
+    }
+
+    /** Compiles the graph, takes over its nodes' sensor state and computes the exit distance field. */
+    public RoutingEngine(Graph graph) {
+        this.graph = graph;
+        int cores  = Runtime.getRuntime().availableProcessors();
+        this.pool  = cores > 1 ? new ForkJoinPool(cores) : null;
+        recompile();
+    }
+
+    /**
+     * Rebuilds the snapshot, the writer and the exit field from the graph's
+     * current topology. Needed only after nodes or edges were added. Updates
+     * the old writer had not published yet are picked up, but the old writer
+     * is released: fetch the new one from {@link #getEnvironmentWriter()}.
+     */
+    public synchronized void recompile() {
+        if (state != null) state.writer.release();
+        state = new State(graph.compile());
+    }
+
+    /** Hands the nodes back to their own setters and shuts the spur-search pool down. */
+    @Override
+    public synchronized void close() {
+        state.writer.release();
+        if (pool != null) pool.shutdown();
+    }
+
+    // -------------------------
+    //  Accessors
+    // -------------------------
+
+    public Graph getGraph() { return graph; }
+
+    /** The current compiled snapshot. */
+    public CompiledGraph getCompiledGraph() { return state.compiled; }
+
+    /**
+     * The single writer for sensor updates. Changes become visible to queries
+     * when it publishes them; it is confined to the first thread that writes.
+     */
+    public EnvironmentWriter getEnvironmentWriter() { return state.writer; }
+
+    /** A view of the compiled snapshot pinned to the latest published environment. */
+    public CompiledGraph view() { return state.writer.view(); }
+
+    /** Every Exit in the graph, passable or not. */
+    public List<Exit> getExits() { return state.exits; }
+
+    /** True if at least one exit is passable in the latest published environment. */
+    public boolean hasPassableExit() {
+        State s = state;
+        return s.hasPassableExit(s.writer.current());
+    }
+
+    // -------------------------
+    //  Queries
+    // -------------------------
+
+    /** The nearest passable exit from the node, an O(1) lookup in the exit field. */
+    public Optional<Exit> nearestExit(Node source) {
+        RouteQueryEvent   event = RouteQueryEvent.start();
+        ExitDistanceField f     = state.published;
+        Optional<Exit>    exit  = f.nearestExit(source);
+        if (event != null && event.shouldCommit()) fieldLookup(event, f, source);
+        return exit;
+    }
+
+    /**
+     * The route to the nearest passable exit and its distance, both read from
+     * one frozen copy of the exit field, so they always belong together.
+     */
+    public Optional<PathCandidate> routeToNearestExit(Node source) {
+        RouteQueryEvent         event = RouteQueryEvent.start();
+        ExitDistanceField       f     = state.published;
+        Optional<PathCandidate> route = f.routeToExit(source);
+        if (event != null && event.shouldCommit()) fieldLookup(event, f, source);
+        return route;
+    }
+
+    /** Distance to the nearest passable exit, or MAX_VALUE if none is reachable. */
+    public float distanceToExit(Node source) {
+        return state.published.distanceToExit(source);
+    }
+
+    /** Shortest route between two nodes with the given strategy, with its distance. */
+    public Optional<PathCandidate> shortestRoute(Node source, Node target, CompiledGraph.Algorithm algorithm) {
+        return view().shortestRoute(source, target, algorithm);
+    }
+
+    /** The K shortest simple paths between two nodes, spur searches run on the engine's pool. */
+    public List<PathCandidate> kShortestPaths(Node source, Node target, int k, CompiledGraph.Algorithm algorithm) {
+        return view().findKShortestPaths(source, target, k, algorithm, pool);
+    }
+
+    /**
+     * The global top K routes from the node to any passable exit, in ascending
+     * distance order. Results are cached per published version.
+     *
+     * @return up to K routes, empty if no passable exit is reachable
+     */
+    public List<PathCandidate> topRoutesToExits(Node source, int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        RouteQueryEvent     event    = RouteQueryEvent.start();
+        State               s        = state;
+        PassabilitySnapshot snapshot = s.writer.current();
+        long                key      = (long) s.compiled.require(source) << 32 | k;
+
+        RouteCache          cache  = s.routesFor(snapshot);   // null if a newer version took over meanwhile
+        List<PathCandidate> routes = cache == null ? null : cache.get(key);
+        if (routes != null) {
+            if (event != null && event.shouldCommit())
+                event.complete(RouteQueryEvent.FIND_K_SHORTEST_PATHS, source, null, 0, 0,
+                               routes.isEmpty() ? Float.NaN : routes.get(0).totalDistance, true);
+            return routes;
+        }
+        if (!s.hasPassableExit(snapshot)) return Collections.emptyList();
+
+        routes = Collections.unmodifiableList(s.compiled.at(snapshot).findKShortestPathsToExits(source, k, pool));
+        if (cache != null) cache.put(key, routes);
+        return routes;
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    // Reports an exit-field query: no search, so no work, and NaN when no exit is reachable
+    private static void fieldLookup(RouteQueryEvent event, ExitDistanceField f, Node source) {
+        float d = f.distanceToExit(source);
+        event.complete(RouteQueryEvent.FIND_NEAREST_EXIT, source, null, 0, 0,
+                       d == Float.MAX_VALUE ? Float.NaN : d, true);
+    }
+
+    // -------------------------
+    //  Headless entry point
+    // -------------------------
+
+    /**
+     * Prints the top 3 exit routes for each given node id of the sample
+     * building, or for every node if none is given. Runs without a display.
+     * <pre>
+     *   java RoutingEngine 3A 2D
+     * </pre>
+     */
+    public static void main(String[] args) {
+        Graph graph = SampleBuilding.build();
+        try (RoutingEngine engine = new RoutingEngine(graph)) {
+            List<Node> sources = new ArrayList<>();
+            if (args.length == 0) sources.addAll(graph.getAllNodes());
+            for (String id : args)
+                sources.add(graph.getNode(id).orElseThrow(
+                        () -> new IllegalArgumentException("Unknown node " + id)));
+
+            for (Node source : sources) {
+                List<PathCandidate> routes = engine.topRoutesToExits(source, 3);
+                System.out.println(source.getId() + (routes.isEmpty() ? "  no reachable exit" : ""));
+                for (int i = 0; i < routes.size(); i++)
+                    System.out.println("  #" + (i + 1) + "  " + routes.get(i));
+            }
+        }
+    }
+}
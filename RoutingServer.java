@@ -0,0 +1,339 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Embedded HTTP query service over a {@link RoutingEngine}, built on the JDK's
+ * {@code com.sun.net.httpserver}.
+ *
+ * <p>Endpoints (node ids are resolved through {@link Graph#getNode(String)};
+ * every response is JSON):
+ * <pre>
+ *   GET  /nearest-exit?from=3A
+ *   GET  /path?from=3A&amp;to=0C[&amp;algorithm=ALT]
+ *   GET  /k-paths?from=3A[&amp;to=0C]&amp;k=3[&amp;algorithm=ALT]   (no "to": top K to any exit)
+ *   POST /batch      body: one query per line, e.g. "/path?from=3A&amp;to=0C"
+ * </pre>
+ * A batch answers all of its queries in one response, as a JSON array in
+ * request order. Every query is a single engine call, so it is answered from
+ * one published environment snapshot even while sensors are being updated.
+ *
+ * <p>Handlers run on virtual threads when the JDK provides them (Java 21+),
+ * otherwise on a cached thread pool, so a slow client never holds a platform
+ * thread per connection. At most one query per CPU is searched at a time,
+ * so the graph's pooled search workspaces stay bounded however many
+ * requests are in flight. Responses carry an exact Content-Length, which lets
+ * HTTP/1.1 clients keep their connections alive across queries.
+ */
+public class RoutingServer {
+
+    private static final int MAX_K     = 50;
+    private static final int MAX_BATCH = 1000;
+    private static final int MAX_BODY  = 256 * 1024;   // bytes; far more than MAX_BATCH ordinary query lines
+
+    private final RoutingEngine   engine;
+    private final HttpServer      server;
+    private final ExecutorService executor;
+    private final Semaphore       searches = new Semaphore(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Binds the server; call {@link #start()} to begin serving.
+     *
+     * @param port TCP port, or 0 for any free port
+     */
+    public RoutingServer(RoutingEngine engine, int port) throws IOException {
+        this.engine   = engine;
+        this.server   = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/nearest-exit", ex -> respond(ex, "GET",  this::nearestExit));
+        server.createContext("/path",         ex -> respond(ex, "GET",  this::path));
+        server.createContext("/k-paths",      ex -> respond(ex, "GET",  this::kPaths));
+        server.createContext("/batch",        ex -> respond(ex, "POST", this::batch));
+    }
+
+    public void start() { server.start(); }
+
+    /** Stops accepting requests, waits up to the given delay for running ones, then releases the threads. */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /** The bound port, useful when constructed with port 0. */
+    public int getPort() { return server.getAddress().getPort(); }
+
+    // -------------------------
+    //  Queries
+    // -------------------------
+
+    // A query handler: parameters and body in, JSON out
+    private interface Query {
+        String answer(Map<String, String> params, String body);
+    }
+
+    private String nearestExit(Map<String, String> params, String body) {
+        Node source = node(params, "from");
+        Optional<PathCandidate> route = engine.routeToNearestExit(source);
+        if (!route.isPresent()) return "{\"from\":" + quote(source.getId()) + ",\"exit\":null}";
+
+        List<Node> path = route.get().nodes;
+        Exit       exit = (Exit) path.get(path.size() - 1);
+        return "{\"from\":" + quote(source.getId())
+             + ",\"exit\":" + quote(exit.getId())
+             + ",\"name\":" + quote(exit.getExitName())
+             + ",\"distance\":" + route.get().totalDistance
+             + ",\"path\":" + ids(path) + "}";
+    }
+
+    private String path(Map<String, String> params, String body) {
+        Node source = node(params, "from");
+        Node target = node(params, "to");
+        Optional<PathCandidate> route = engine.shortestRoute(source, target, algorithm(params));
+        return "{\"from\":" + quote(source.getId()) + ",\"to\":" + quote(target.getId())
+             + (route.isPresent()
+                ? ",\"distance\":" + route.get().totalDistance + ",\"path\":" + ids(route.get().nodes)
+                : ",\"path\":null")
+             + "}";
+    }
+
+    private String kPaths(Map<String, String> params, String body) {
+        Node source = node(params, "from");
+        int  k      = parseK(params.getOrDefault("k", "3"));
+        List<PathCandidate> routes = params.containsKey("to")
+                ? engine.kShortestPaths(source, node(params, "to"), k, algorithm(params))
+                : engine.topRoutesToExits(source, k);
+
+        StringBuilder sb = new StringBuilder("{\"from\":").append(quote(source.getId()))
+                .append(",\"to\":").append(params.containsKey("to") ? quote(params.get("to")) : "\"any-exit\"")
+                .append(",\"paths\":[");
+        for (int i = 0; i < routes.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"distance\":").append(routes.get(i).totalDistance)
+              .append(",\"path\":").append(ids(routes.get(i).nodes)).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String batch(Map<String, String> params, String body) {
+        String[] lines = body.split("\r?\n");
+        if (lines.length > MAX_BATCH)
+            throw new IllegalArgumentException("Batch exceeds " + MAX_BATCH + " queries");
+
+        StringBuilder sb    = new StringBuilder("[");
+        boolean       first = true;
+        for (String line : lines) {
+            if (line.trim().isEmpty()) continue;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(batchEntry(line.trim()));
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Answers one line of a batch; failures become an error entry instead of failing the batch. */
+    private String batchEntry(String line) {
+        try {
+            URI   uri   = URI.create(line);
+            Query query;
+            switch (uri.getPath()) {
+                case "/nearest-exit": query = this::nearestExit; break;
+                case "/path":         query = this::path;        break;
+                case "/k-paths":      query = this::kPaths;      break;
+                default: throw new IllegalArgumentException("Unknown query " + uri.getPath());
+            }
+            return query.answer(parseQuery(uri.getRawQuery()), "");
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    // -------------------------
+    //  HTTP plumbing
+    // -------------------------
+
+    private void respond(HttpExchange exchange, String method, Query query) throws IOException {
+        int    status;
+        String json;
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                status = 405;
+                json   = error("Use " + method);
+            } else {
+                String body = method.equals("POST") ? readBody(exchange) : "";
+                searches.acquireUninterruptibly();
+                try {
+                    json = query.answer(parseQuery(exchange.getRequestURI().getRawQuery()), body);
+                } finally {
+                    searches.release();
+                }
+                status = 200;
+            }
+        } catch (TooLarge e) {
+            status = 413;
+            json   = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            json   = error(e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            json   = error("Internal error: " + e);
+        }
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);   // fixed length keeps the connection reusable
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads the body, refusing it once it passes {@link #MAX_BODY} bytes or
+     * {@link #MAX_BATCH} lines, so an oversized request is never buffered whole.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null && declared.matches("\\d{1,18}") && Long.parseLong(declared) > MAX_BODY)
+            throw new TooLarge("Body exceeds " + MAX_BODY + " bytes");
+
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int    lines = 0;
+            for (int r; (r = in.read(chunk)) > 0; ) {
+                if (buf.size() + r > MAX_BODY) throw new TooLarge("Body exceeds " + MAX_BODY + " bytes");
+                for (int i = 0; i < r; i++)
+                    if (chunk[i] == '\n' && ++lines > MAX_BATCH)
+                        throw new TooLarge("Batch exceeds " + MAX_BATCH + " queries");
+                buf.write(chunk, 0, r);
+            }
+            return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int    eq  = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String val = eq < 0 ? ""   : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(val, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Virtual-thread-per-task executor when running on Java 21+, looked up
+     * reflectively so the sources still build for Java 11; a cached pool otherwise.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Request body over the size or line limit, answered with 413
+    private static final class TooLarge extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        TooLarge(String message) { super(message); }
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    private Node node(Map<String, String> params, String name) {
+        String id = params.get(name);
+        if (id == null) throw new IllegalArgumentException("Missing parameter '" + name + "'");
+        return engine.getGraph().getNode(id)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown node " + id));
+    }
+
+    private static CompiledGraph.Algorithm algorithm(Map<String, String> params) {
+        String name = params.getOrDefault("algorithm", "DIJKSTRA");
+        try {
+            return CompiledGraph.Algorithm.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown algorithm " + name);
+        }
+    }
+
+    private static int parseK(String value) {
+        int k;
+        try {
+            k = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("k must be an integer");
+        }
+        if (k < 1 || k > MAX_K) throw new IllegalArgumentException("k must be between 1 and " + MAX_K);
+        return k;
+    }
+
+    private static String ids(List<Node> path) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(quote(path.get(i).getId()));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n");  break;
+                case '\r': sb.append("\\r");  break;
+                case '\t': sb.append("\\t");  break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else          sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // -------------------------
+    //  Entry point
+    // -------------------------
+
+    /**
+     * Serves the sample building.
+     * <pre>
+     *   java RoutingServer [port]        (default 8080)
+     *   curl 'http://localhost:8080/k-paths?from=3A&amp;k=3'
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        int           port   = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        RoutingEngine engine = new RoutingEngine(SampleBuilding.build());
+        RoutingServer server = new RoutingServer(engine, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            engine.close();
+        }));
+        server.start();
+        System.out.println("Routing service listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * The demonstration building shown by {@link GraphGUI}, built without any GUI
+ * dependency so it can also back the headless {@link RoutingEngine}.
+ *
+ * <p>Four floors (0-3), each a 2-column x 3-row ring of six nodes. Adjacent
+ * floors are connected at the top and bottom rows (distance 4). Floor 0 has
+ * two Exit nodes on its bottom row, one of them blocked. Node coordinates
+ * are the canvas positions used by the GUI.
+ */
+public final class SampleBuilding {
+
+    private SampleBuilding() {}
+
+    /** Builds a fresh copy of the sample building. */
+    public static Graph build() {
+        //  Node naming: floor digit + letter, left col top-to-bottom then right col:
+        //    Floor 0: 0A, 0B, 0C (left), 0D, 0E, 0F (right)
+        //    Floor 1: 1A, 1B, 1C (left), 1D, 1E, 1F (right)
+        //    ...
+        //
+        //  Ring per floor (clockwise):
+        //    0A - 0D  (top edge)
+        //    0D - 0E  (right col down)
+        //    0E - 0F  (right col down)
+        //    0F - 0C  (bottom edge)
+        //    0C - 0B  (left col up)
+        //    0B - 0A  (left col up)
+        //
+        //  Inter-floor bridges at top row and bottom row.
+        //  Exits on floor 0, bottom row (0C = West Exit, 0F = East Exit).
+        //
+        //  Layout: floors side by side horizontally,
+        //  each shifted downward by `stagger` relative to the previous.
+
+        final int FLOORS  = 4;
+        final int colGap  = 160;  // horizontal distance between left and right column
+        final int rowGap  = 110;  // vertical distance between rows within a floor
+        final int floorW  = 230;  // horizontal distance between floor blocks
+        final int stagger =  40;  // each floor is shifted down by this amount
+        final int originX =  80;  // x of left column of floor 0
+        final int originY =  80;  // y of top row of floor 0
+
+        Graph graph = new Graph();
+
+        // n[floor][col][row]: col 0=left, 1=right; row 0=top, 1=mid, 2=bottom
+        Node[][][] n = new Node[FLOORS][2][3];
+
+        // Letter sequence for naming: left col = A,B,C  right col = D,E,F
+        char[] leftLetters  = {'A', 'B', 'C'};
+        char[] rightLetters = {'D', 'E', 'F'};
+
+        for (int fl = 0; fl < FLOORS; fl++) {
+            int lx = originX + fl * floorW;
+            int rx = lx + colGap;
+            int yBase = originY + fl * stagger;  // stagger each floor downward
+
+            for (int row = 0; row < 3; row++) {
+                int    y   = yBase + row * rowGap;
+                float  t   = 20f + row * 4f;
+                float  g   = 0.01f + row * 0.01f;
+                String lid = fl + "" + leftLetters[row];
+                String rid = fl + "" + rightLetters[row];
+
+                if (fl == 0 && row == 2) {
+                    // Ground floor bottom row → exits
+                    n[fl][0][row] = new Exit(lid, "West Exit", fl, true,  t, g);
+                    n[fl][1][row] = new Exit(rid, "East Exit", fl, false, 78f, 0.85f); // blocked
+                } else {
+                    // Make one node impassable to demonstrate the feature
+                    boolean hot = (fl == 2 && row == 1);
+                    n[fl][0][row] = new Node(lid, fl, hot ? 82f : t, hot ? 0.75f : g);
+                    n[fl][1][row] = new Node(rid, fl, t, g);
+                }
+
+                n[fl][0][row].setCoordinates(lx, y);
+                n[fl][1][row].setCoordinates(rx, y);
+                graph.addNode(n[fl][0][row]);
+                graph.addNode(n[fl][1][row]);
+            }
+        }
+
+        // ── Per-floor ring edges (clockwise) ──────────────────────
+        for (int fl = 0; fl < FLOORS; fl++) {
+            n[fl][0][0].addBidirectionalNeighbor(n[fl][1][0], 3f); // top edge
+            n[fl][1][0].addBidirectionalNeighbor(n[fl][1][1], 2f); // right col top -> mid
+            n[fl][1][1].addBidirectionalNeighbor(n[fl][1][2], 2f); // right col mid -> bot
+            n[fl][1][2].addBidirectionalNeighbor(n[fl][0][2], 3f); // bottom edge
+            n[fl][0][2].addBidirectionalNeighbor(n[fl][0][1], 2f); // left col bot -> mid
+            n[fl][0][1].addBidirectionalNeighbor(n[fl][0][0], 2f); // left col mid -> top
+        }
+
+        // ── Inter-floor bridges ───────────────────────────────────
+        // Connect adjacent floors at top row (row 0) and bottom row (row 2),
+        // both left and right columns.
+        for (int fl = 0; fl < FLOORS - 1; fl++) {
+            n[fl][0][0].addBidirectionalNeighbor(n[fl+1][0][0], 4f); // left  top
+            n[fl][1][0].addBidirectionalNeighbor(n[fl+1][1][0], 4f); // right top
+            n[fl][0][2].addBidirectionalNeighbor(n[fl+1][0][2], 4f); // left  bottom
+            n[fl][1][2].addBidirectionalNeighbor(n[fl+1][1][2], 4f); // right bottom
+        }
+        return graph;
+    }
+}
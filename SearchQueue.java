@@ -0,0 +1,29 @@
+/**
+ * Priority queue over int node ids with float keys and decrease-key, as used
+ * by the {@link CompiledGraph} searches. {@link IndexedHeap} accepts any keys;
+ * {@link BucketQueue} is faster but only serves monotone Dijkstra over weights
+ * that fit its quantization step.
+ */
+abstract class SearchQueue {
+
+    abstract boolean isEmpty();
+
+    abstract int size();
+
+    abstract boolean contains(int v);
+
+    /** Key of the current minimum. Only valid when not empty. */
+    abstract float minKey();
+
+    /** Removes all entries. */
+    abstract void clear();
+
+    /**
+     * Inserts {@code v} with the given key, or lowers its key if already present.
+     * A larger key for a present id is ignored.
+     */
+    abstract void offer(int v, float key);
+
+    /** Removes and returns the id with the smallest key. */
+    abstract int poll();
+}
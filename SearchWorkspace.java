@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Reusable per-thread scratch space for the {@link CompiledGraph} searches.
+ *
+ * <p>Holds the tentative distance and predecessor arrays plus an
+ * {@link IndexedHeap}, and a {@link BucketQueue} when the snapshot's weights
+ * quantize. Instead of clearing the arrays between queries, every
+ * query bumps a generation counter and an entry only counts as set when its
+ * stamp matches the current generation. Starting a query is therefore O(1)
+ * and a search that finds nothing allocates nothing.
+ *
+ * <p>Yen's spur searches additionally use generation-stamped node and edge
+ * exclusion sets, so switching to the next spur node costs O(1) rather than
+ * clearing a bitset.
+ *
+ * <p>Counts the nodes settled and queue pushes of every search run in it;
+ * callers read the counters before and after a search to report its work.
+ *
+ * <p>Not thread-safe: a {@link CompiledGraph} lends each workspace to one
+ * thread at a time.
+ */
+final class SearchWorkspace {
+
+    final IndexedHeap heap;
+    final BucketQueue buckets;      // null when the snapshot's weights don't quantize
+
+    private final float[] dist;
+    private final int[]   prev;
+    private final int[]   stamp;
+    private int generation;
+
+    // Nesting depth of the current loan; see CompiledGraph.acquire()
+    int leases;
+
+    // Work done by all searches in this workspace so far; only ever increased
+    long settled;
+    long pushes;
+
+    // Exclusion sets for spur searches (edges by CSR index), created on first use
+    private final int edgeCount;
+    private int[] nodeBan;
+    private int[] edgeBan;
+    private int   banGeneration;
+
+    // Second set of labels for bidirectional searches, created on first use
+    private SearchWorkspace reverse;
+
+    SearchWorkspace(int nodeCount, int edgeCount, BucketQueue buckets) {
+        this.heap      = new IndexedHeap(nodeCount);
+        this.buckets   = buckets;
+        this.dist      = new float[nodeCount];
+        this.prev      = new int[nodeCount];
+        this.stamp     = new int[nodeCount];
+        this.edgeCount = edgeCount;
+    }
+
+    /** Companion workspace for the backward half of a bidirectional search. */
+    SearchWorkspace reverse() {
+        if (reverse == null)
+            reverse = new SearchWorkspace(dist.length, edgeCount, buckets == null ? null : buckets.sibling());
+        return reverse;
+    }
+
+    /** Queue for monotone searches without a heuristic: the bucket queue if available. */
+    SearchQueue queue() {
+        return buckets != null ? buckets : heap;
+    }
+
+    /** Invalidates all labels from the previous query and empties the heap. */
+    void begin() {
+        if (++generation == 0) {            // wrapped around: stale stamps could collide
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        heap.clear();
+        if (buckets != null) buckets.clear();
+    }
+
+    /** Tentative distance of v, or MAX_VALUE if not reached in this query. */
+    float dist(int v) { return stamp[v] == generation ? dist[v] : Float.MAX_VALUE; }
+
+    /** Predecessor of v on its tentative path, or -1. */
+    int prev(int v) { return stamp[v] == generation ? prev[v] : -1; }
+
+    boolean reached(int v) { return stamp[v] == generation; }
+
+    void label(int v, float d, int p) {
+        stamp[v] = generation;
+        dist[v]  = d;
+        prev[v]  = p;
+    }
+
+    /** Starts a new, empty set of excluded nodes and edges. */
+    void beginExclusions() {
+        if (nodeBan == null) {
+            nodeBan = new int[dist.length];
+            edgeBan = new int[edgeCount];
+        }
+        if (++banGeneration == 0) {
+            Arrays.fill(nodeBan, 0);
+            Arrays.fill(edgeBan, 0);
+            banGeneration = 1;
+        }
+    }
+
+    void excludeNode(int v) { nodeBan[v] = banGeneration; }
+    void excludeEdge(int e) { edgeBan[e] = banGeneration; }
+
+    boolean excludedNode(int v) { return nodeBan[v] == banGeneration; }
+    boolean excludedEdge(int e) { return edgeBan[e] == banGeneration; }
+
+    /** Reconstructs the path ending at target by following predecessors. */
+    int[] pathTo(int target) {
+        int len = 0;
+        for (int at = target; at != -1; at = prev[at]) len++;
+        int[] path = new int[len];
+        for (int at = target; at != -1; at = prev[at]) path[--len] = at;
+        return path;
+    }
+}
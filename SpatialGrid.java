@@ -0,0 +1,147 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid over axis-aligned boxes in canvas coordinates, used by
+ * {@link GraphGUI} for hit-testing and viewport culling.
+ *
+ * <p>Items are identified by their index in the box arrays and are
+ * registered in every cell their box overlaps; points are boxes of zero size.
+ * Cells are stored compressed like the edges of a {@link CompiledGraph}: the
+ * items of cell c are {@code items[start[c] .. start[c + 1])}. A window query
+ * visits only the overlapped cells, so its cost follows the number of items
+ * near the window rather than the size of the building.
+ *
+ * <p>The grid is immutable after construction, but queries share a
+ * de-duplication stamp and must come from one thread (the EDT).
+ */
+final class SpatialGrid {
+
+    // Cells are grown until there are at most this many per item, so far-off outliers cannot blow the table up
+    private static final int MAX_CELLS_PER_ITEM = 4;
+
+    private final int[] minX, minY, maxX, maxY;
+    private final int   originX, originY;
+    private final int   cellSize;
+    private final int   cols, rows;
+    private final int[] start;   // length cols * rows + 1
+    private final int[] items;
+
+    // Items spanning several cells are reported once per query
+    private final int[] stamp;
+    private int         generation;
+
+    /**
+     * @param cellSize preferred cell edge length in canvas pixels; doubled
+     *                 while the grid would be much larger than the item count
+     */
+    SpatialGrid(int[] minX, int[] minY, int[] maxX, int[] maxY, int cellSize) {
+        int n = minX.length;
+        if (minY.length != n || maxX.length != n || maxY.length != n)
+            throw new IllegalArgumentException("Box arrays differ in length");
+        if (cellSize < 1) throw new IllegalArgumentException("cellSize must be positive");
+        this.minX  = minX;
+        this.minY  = minY;
+        this.maxX  = maxX;
+        this.maxY  = maxY;
+        this.stamp = new int[n];
+
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, minX[i]); y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]); y1 = Math.max(y1, maxY[i]);
+        }
+        if (n == 0) x0 = y0 = x1 = y1 = 0;
+
+        long budget = (long) MAX_CELLS_PER_ITEM * n + 1024;
+        while (((long) (x1 - x0) / cellSize + 1) * ((long) (y1 - y0) / cellSize + 1) > budget) cellSize *= 2;
+        this.originX  = x0;
+        this.originY  = y0;
+        this.cellSize = cellSize;
+        this.cols     = (x1 - x0) / cellSize + 1;
+        this.rows     = (y1 - y0) / cellSize + 1;
+
+        // Counting pass, then fill: same two-pass layout as the CSR build in CompiledGraph
+        this.start = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++)
+            for (int r = row(minY[i]); r <= row(maxY[i]); r++)
+                for (int c = col(minX[i]); c <= col(maxX[i]); c++) start[r * cols + c + 1]++;
+        for (int c = 0; c < cols * rows; c++) start[c + 1] += start[c];
+
+        this.items = new int[start[cols * rows]];
+        int[] fill = Arrays.copyOf(start, cols * rows);
+        for (int i = 0; i < n; i++)
+            for (int r = row(minY[i]); r <= row(maxY[i]); r++)
+                for (int c = col(minX[i]); c <= col(maxX[i]); c++) items[fill[r * cols + c]++] = i;
+    }
+
+    /** A grid over points; item i is the point (x[i], y[i]). */
+    static SpatialGrid ofPoints(int[] x, int[] y, int cellSize) {
+        return new SpatialGrid(x, y, x, y, cellSize);
+    }
+
+    /** Number of items. */
+    int size() { return stamp.length; }
+
+    /**
+     * Calls {@code action} once for every item whose box intersects the
+     * window [x0, x1] x [y0, y1], in no particular order.
+     */
+    void forEachIn(int x0, int y0, int x1, int y1, IntConsumer action) {
+        if (x1 < originX || y1 < originY || x0 > originX + cols * cellSize || y0 > originY + rows * cellSize) return;
+        int gen = nextGeneration();
+        for (int r = row(y0), r1 = row(y1); r <= r1; r++) {
+            for (int c = col(x0), c1 = col(x1); c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = start[cell]; k < start[cell + 1]; k++) {
+                    int i = items[k];
+                    if (stamp[i] == gen) continue;
+                    stamp[i] = gen;
+                    if (maxX[i] >= x0 && minX[i] <= x1 && maxY[i] >= y0 && minY[i] <= y1) action.accept(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * The item whose box centre is closest to (x, y) and at most
+     * {@code radius} away from it, or -1 if there is none.
+     */
+    int nearest(int x, int y, int radius) {
+        if (x + radius < originX || y + radius < originY
+                || x - radius > originX + cols * cellSize || y - radius > originY + rows * cellSize) return -1;
+        int    gen  = nextGeneration();
+        int    best = -1;
+        double bestD2 = (double) radius * radius;
+        for (int r = row(y - radius), r1 = row(y + radius); r <= r1; r++) {
+            for (int c = col(x - radius), c1 = col(x + radius); c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = start[cell]; k < start[cell + 1]; k++) {
+                    int i = items[k];
+                    if (stamp[i] == gen) continue;
+                    stamp[i] = gen;
+                    double dx = (minX[i] + maxX[i]) / 2.0 - x, dy = (minY[i] + maxY[i]) / 2.0 - y;
+                    double d2 = dx * dx + dy * dy;
+                    if (d2 <= bestD2) { bestD2 = d2; best = i; }
+                }
+            }
+        }
+        return best;
+    }
+
+    // -------------------------
+    //  Private helpers
+    // -------------------------
+
+    // Cell column / row of a coordinate, clamped to the grid
+    private int col(int x) { return Math.max(0, Math.min(cols - 1, (int) (((long) x - originX) / cellSize))); }
+    private int row(int y) { return Math.max(0, Math.min(rows - 1, (int) (((long) y - originY) / cellSize))); }
+
+    private int nextGeneration() {
+        if (++generation == 0) {            // wrapped around: stale stamps could collide
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        return generation;
+    }
+}